@@ -0,0 +1,180 @@
+package org.sotorrent.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous alternative to {@link HttpUtils#openHttpConnection(String, String, boolean, int, int)} for checking
+ * many links. Connections are kept alive and reused per host (HTTP/2 is used if the server supports it), and requests
+ * do not block the calling thread. At most maxConcurrentRequests requests are in flight at the same time, further
+ * requests are queued and sent in the order of submission. If maxQueuedRequests requests are queued, send(...) blocks
+ * until a queued request has been sent, such that producers of many links do not fill the heap.
+ * Idempotent requests that fail with an I/O error other than a timeout (e.g., a pooled connection that has been
+ * reset by the server) are retried once on a new connection.
+ * Use {@link HttpUtils#success(HttpResponse)}, {@link HttpUtils#redirect(HttpResponse)}, and
+ * {@link HttpUtils#tooManyRequests(HttpResponse)} to evaluate the responses.
+ */
+public class AsyncHttpClient implements HttpRequestSender {
+    private static final int DEFAULT_MAX_QUEUED_REQUESTS = 10000;
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE");
+
+    private final HttpClient client;
+    private final Duration readTimeout;
+    private final int maxConcurrentRequests;
+    private final Queue<Runnable> queuedRequests = new ConcurrentLinkedQueue<>();
+    private final Semaphore queueSlots;
+    private final AtomicInteger runningRequests = new AtomicInteger(0);
+    // number of calls of sendQueuedRequests() while one thread sends queued requests, such that callbacks of
+    // requests that complete synchronously do not send queued requests recursively
+    private final AtomicInteger sendCalls = new AtomicInteger(0);
+
+    /**
+     * @param connectTimeout timeout in milliseconds for establishing a connection
+     * @param readTimeout timeout in milliseconds for receiving the response headers
+     */
+    public AsyncHttpClient(int maxConcurrentRequests, boolean followRedirects, int connectTimeout, int readTimeout) {
+        this(maxConcurrentRequests, DEFAULT_MAX_QUEUED_REQUESTS, followRedirects, connectTimeout, readTimeout);
+    }
+
+    /**
+     * @param maxQueuedRequests maximum number of requests waiting for a free slot before send(...) blocks
+     */
+    public AsyncHttpClient(int maxConcurrentRequests, int maxQueuedRequests, boolean followRedirects,
+                           int connectTimeout, int readTimeout) {
+        if (maxConcurrentRequests < 1 || maxQueuedRequests < 1) {
+            throw new IllegalArgumentException("At least one concurrent and one queued request required.");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.queueSlots = new Semaphore(maxQueuedRequests);
+        this.readTimeout = Duration.ofMillis(readTimeout);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2) // falls back to HTTP/1.1
+                .followRedirects(followRedirects ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Blocks while maxQueuedRequests requests are queued, the future fails if the calling thread is interrupted
+     * while waiting.
+     */
+    @Override
+    public CompletableFuture<HttpResponse<Void>> send(String url, String requestMethod, Map<String, String> headers) {
+        HttpRequest request;
+        try {
+            request = buildRequest(url, requestMethod, headers);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        try {
+            queueSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<Void>> result = new CompletableFuture<>();
+        int retries = IDEMPOTENT_METHODS.contains(request.method()) ? 1 : 0;
+        queuedRequests.add(() -> sendRequest(request, result, retries));
+        sendQueuedRequests();
+        return result;
+    }
+
+    private void sendRequest(HttpRequest request, CompletableFuture<HttpResponse<Void>> result, int retries) {
+        try {
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        if (e != null && retries > 0 && retryable(e)) {
+                            sendRequest(request, result, retries - 1); // keeps the slot of the request
+                            return;
+                        }
+                        onRequestCompleted();
+                        if (e != null) {
+                            result.completeExceptionally(e);
+                        } else {
+                            result.complete(response);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            onRequestCompleted();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static boolean retryable(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        // timeouts are not retried, because the host would most likely not respond in time again
+        return cause instanceof IOException && !(cause instanceof HttpTimeoutException);
+    }
+
+    private HttpRequest buildRequest(String url, String requestMethod, Map<String, String> headers) {
+        if (!url.startsWith("http://") && !url.startsWith("https://")) {
+            throw new IllegalArgumentException("Protocol is not http.");
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .method(requestMethod, HttpRequest.BodyPublishers.noBody())
+                .header("User-Agent", HttpUtils.USER_AGENT)
+                .timeout(readTimeout);
+        headers.forEach(builder::header);
+        return builder.build();
+    }
+
+    private void onRequestCompleted() {
+        runningRequests.decrementAndGet();
+        sendQueuedRequests();
+    }
+
+    private void sendQueuedRequests() {
+        if (sendCalls.getAndIncrement() > 0) {
+            return; // the thread that is already sending checks the queue again
+        }
+        int calls = 1;
+        do {
+            while (!queuedRequests.isEmpty()) {
+                int running = runningRequests.get();
+                if (running >= maxConcurrentRequests) {
+                    break; // sent when a running request completes
+                }
+                if (!runningRequests.compareAndSet(running, running + 1)) {
+                    continue;
+                }
+                Runnable request = queuedRequests.poll();
+                if (request == null) {
+                    runningRequests.decrementAndGet();
+                    break;
+                }
+                queueSlots.release();
+                request.run(); // may call sendQueuedRequests() if the request completes synchronously
+            }
+            calls = sendCalls.addAndGet(-calls);
+        } while (calls > 0);
+    }
+
+    /**
+     * @return number of requests in flight
+     */
+    public int getRunningRequestCount() {
+        return runningRequests.get();
+    }
+
+    /**
+     * @return number of requests waiting for a free slot
+     */
+    public int getQueuedRequestCount() {
+        return queuedRequests.size();
+    }
+}
@@ -0,0 +1,186 @@
+package org.sotorrent.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler that passes log records to a target handler (e.g., a FileHandler) on a background thread, such that
+ * logging threads do not wait for I/O. Records are passed through a bounded lock-free ring buffer and written in
+ * batches, the target handler is flushed once per batch. If the buffer is full, records are either dropped (the
+ * number of dropped records is logged as a warning) or the logging thread waits for free space.
+ */
+public class AsyncLogHandler extends Handler {
+    public enum OverflowPolicy {
+        DROP, BLOCK
+    }
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Handler target;
+    private final OverflowPolicy overflowPolicy;
+
+    // bounded multi-producer ring buffer (see Vyukov's bounded MPMC queue), drained by the writer thread only
+    private final LogRecord[] records;
+    private final AtomicLongArray sequences; // sequence == position: free, sequence == position + 1: written
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(0); // next position to write
+    private final AtomicLong head = new AtomicLong(0); // next position to read
+    private volatile long written = 0; // records before this position have been passed to the target and flushed
+
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final Thread writer;
+    private volatile boolean writerParked = false;
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity maximum number of buffered records, rounded up to a power of two
+     */
+    public AsyncLogHandler(Handler target, int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.target = target;
+        this.overflowPolicy = overflowPolicy;
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.records = new LogRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+
+        this.writer = new Thread(this::write, "AsyncLogHandler");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    private boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records[index] = record;
+                    sequences.set(index, position + 1); // publishes the record to the writer
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // full
+            } else {
+                position = tail.get(); // slot taken by another producer
+            }
+        }
+    }
+
+    private LogRecord poll() {
+        long position = head.get();
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null; // empty or not yet published
+        }
+        LogRecord record = records[index];
+        records[index] = null;
+        sequences.set(index, position + records.length);
+        head.set(position + 1);
+        return record;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        // the caller is inferred lazily from the stack trace, which must happen on the logging thread
+        record.getSourceClassName();
+
+        while (!offer(record)) {
+            if (overflowPolicy == OverflowPolicy.DROP || Thread.currentThread() == writer) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void write() {
+        while (true) {
+            int count = 0;
+            LogRecord record;
+            while (count < BATCH_SIZE && (record = poll()) != null) {
+                target.publish(record);
+                count++;
+            }
+            long dropped = droppedCount.getAndSet(0);
+            if (dropped > 0) {
+                target.publish(new LogRecord(Level.WARNING, dropped + " log records dropped (buffer full)."));
+                count++;
+            }
+            if (count > 0) {
+                target.flush();
+                written = head.get();
+                continue;
+            }
+
+            if (closed && isEmpty()) {
+                return;
+            }
+            writerParked = true;
+            if (isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerParked = false;
+        }
+    }
+
+    private boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * @return number of records dropped since the last batch was written
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Wait until all records published so far have been written and flush the target handler.
+     */
+    @Override
+    public void flush() {
+        long position = tail.get();
+        while (written < position && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        target.flush();
+    }
+
+    /**
+     * Write the remaining records, stop the writer thread, and close the target handler.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+}
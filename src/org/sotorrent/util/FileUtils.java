@@ -1,15 +1,53 @@
 package org.sotorrent.util;
 
+import org.sotorrent.util.exceptions.FileProcessingException;
+
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class FileUtils {
+    public enum ResultOrder {
+        ORDERED, UNORDERED
+    }
+
+    @FunctionalInterface
+    public interface FileFunction<T> {
+        T apply(Path file) throws Exception;
+    }
+
+    // number of files per thread that are processed or waiting to be consumed
+    private static final int PENDING_FILES_PER_THREAD = 4;
+    // mapped buffers are limited to 2GB, chunks are extended to the end of the line
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    private static final int LINE_SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] UTF8_BOM = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+
     public static void checkIfFileExists(Path file) throws IllegalArgumentException {
         // ensure that file exists
         if (!Files.exists(file) || Files.isDirectory(file)) {
@@ -55,8 +93,8 @@ public class FileUtils {
             throw new IllegalArgumentException("Directory not found: " + dir);
         }
 
-        try {
-            return Files.list(dir)
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
                     .filter(filter)
                     .map(map)
                     .collect(Collectors.toList());
@@ -65,4 +103,256 @@ public class FileUtils {
         }
         return new ArrayList<>();
     }
+
+    /**
+     * Process the regular files in dir and its subdirectories on threadCount threads and pass the results to consumer,
+     * which is called on the calling thread. Directories are walked while files are processed, and at most a few files
+     * per thread are pending, thus neither the paths nor the results of all files are kept in memory.
+     * With ResultOrder.ORDERED, the results are passed in the order of the paths (entries of each directory are sorted
+     * by name, subdirectories are walked when they are encountered), otherwise in the order of completion.
+     * Symbolic links to directories are not followed.
+     * @param filter applied to regular files only
+     * @return number of files that have been processed successfully
+     * @throws FileProcessingException after all other files have been processed, if files or directories failed
+     */
+    public static <T> long processFiles(Path dir, Predicate<Path> filter, FileFunction<T> map, Consumer<? super T> consumer,
+                                        int threadCount, ResultOrder order) throws InterruptedException {
+        if (!Files.exists(dir) || !Files.isDirectory(dir)) {
+            throw new IllegalArgumentException("Directory not found: " + dir);
+        }
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+
+        ExecutorService executor = newDaemonThreadPool(threadCount, "FileUtils.processFiles");
+        try {
+            ParallelFileProcessor<T> processor = new ParallelFileProcessor<>(executor, filter, map, consumer,
+                    threadCount * PENDING_FILES_PER_THREAD, order);
+            processor.walk(dir);
+            processor.consumeAll();
+            if (!processor.failures.isEmpty()) {
+                throw new FileProcessingException(processor.failures);
+            }
+            return processor.processedCount;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Process a large text file (e.g., an XML dump) on threadCount threads. The file is memory-mapped and split into
+     * one chunk per thread (more for files larger than 1GB per thread), which end at line boundaries. A UTF-8 byte
+     * order mark at the beginning of the file is skipped.
+     * @param processChunk called once per chunk, e.g., to iterate over its lines with
+     * {@link LineChunk#forEachDecodedLine(Consumer)}
+     * @return results in the order of the chunks
+     */
+    public static <R> List<R> processLines(Path file, int threadCount, Function<LineChunk, R> processChunk)
+            throws IOException, InterruptedException {
+        checkIfFileExists(file);
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = startsWith(channel, UTF8_BOM) ? UTF8_BOM.length : 0;
+            long size = channel.size();
+            int chunkCount = (int) Math.max(threadCount, (size - start + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+            List<LineChunk> chunks = new ArrayList<>(chunkCount);
+            for (int i = 1; i <= chunkCount && start < size; i++) {
+                long end = i == chunkCount ? size : nextLineStart(channel, start + (size - start) / (chunkCount - i + 1));
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Line too long in " + file + " after position " + start);
+                }
+                chunks.add(new LineChunk(chunks.size(), start, channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+                start = end;
+            }
+
+            // the mapped buffers remain valid after the channel has been closed
+            ExecutorService executor = newDaemonThreadPool(Math.min(threadCount, Math.max(1, chunks.size())),
+                    "FileUtils.processLines");
+            try {
+                List<Future<R>> futures = new ArrayList<>(chunks.size());
+                for (LineChunk chunk : chunks) {
+                    futures.add(executor.submit(() -> processChunk.apply(chunk)));
+                }
+                List<R> results = new ArrayList<>(chunks.size());
+                for (Future<R> future : futures) {
+                    try {
+                        results.add(future.get());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof UncheckedIOException) {
+                            throw ((UncheckedIOException) cause).getCause();
+                        } else if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        } else if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new IllegalStateException(cause);
+                    }
+                }
+                return results;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static ExecutorService newDaemonThreadPool(int threadCount, String name) {
+        return Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static boolean startsWith(FileChannel channel, byte[] prefix) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(prefix.length);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // continue
+        }
+        return !buffer.hasRemaining() && buffer.flip().equals(ByteBuffer.wrap(prefix));
+    }
+
+    /**
+     * @return position after the first \n at or after position, or the size of the file
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(LINE_SCAN_BUFFER_SIZE);
+        while (true) {
+            buffer.clear();
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < count; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += count;
+        }
+    }
+
+    private static class ParallelFileProcessor<T> {
+        private final Predicate<Path> filter;
+        private final FileFunction<T> map;
+        private final Consumer<? super T> consumer;
+        private final int maxPendingCount;
+        private final ResultOrder order;
+
+        private final ExecutorService executor;
+        private final CompletionService<FileResult<T>> completionService; // only used for unordered results
+        private final Queue<Future<FileResult<T>>> pending = new ArrayDeque<>(); // in submission order
+        private final Map<Path, Exception> failures = new LinkedHashMap<>();
+        private long processedCount = 0;
+
+        private ParallelFileProcessor(ExecutorService executor, Predicate<Path> filter, FileFunction<T> map,
+                                      Consumer<? super T> consumer, int maxPendingCount, ResultOrder order) {
+            this.filter = filter;
+            this.map = map;
+            this.consumer = consumer;
+            this.maxPendingCount = maxPendingCount;
+            this.order = order;
+            this.executor = executor;
+            this.completionService = new ExecutorCompletionService<>(executor);
+        }
+
+        private void walk(Path dir) throws InterruptedException {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                Iterable<Path> paths = entries;
+                if (order == ResultOrder.ORDERED) {
+                    List<Path> sortedPaths = new ArrayList<>();
+                    entries.forEach(sortedPaths::add);
+                    sortedPaths.sort(null);
+                    paths = sortedPaths;
+                }
+                for (Path path : paths) {
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        walk(path);
+                    } else if (Files.isRegularFile(path) && filter.test(path)) {
+                        submit(path);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                // e.g., missing permissions, the walk continues with the other directories
+                failures.put(dir, e);
+            }
+        }
+
+        private void submit(Path file) throws InterruptedException {
+            while (pending.size() >= maxPendingCount) {
+                consume(true);
+            }
+            Callable<FileResult<T>> task = () -> {
+                try {
+                    return new FileResult<>(file, map.apply(file), null);
+                } catch (Exception e) {
+                    return new FileResult<>(file, null, e);
+                }
+            };
+            pending.add(order == ResultOrder.ORDERED ? executor.submit(task) : completionService.submit(task));
+            // pass results that are already available
+            while (!pending.isEmpty() && consume(false)) {
+                // continue
+            }
+        }
+
+        private void consumeAll() throws InterruptedException {
+            while (!pending.isEmpty()) {
+                consume(true);
+            }
+        }
+
+        /**
+         * @return false if no result was available without waiting
+         */
+        private boolean consume(boolean wait) throws InterruptedException {
+            Future<FileResult<T>> future;
+            if (order == ResultOrder.ORDERED) {
+                future = pending.peek();
+                if (!wait && !future.isDone()) {
+                    return false;
+                }
+                pending.remove();
+            } else {
+                future = wait ? completionService.take() : completionService.poll();
+                if (future == null) {
+                    return false;
+                }
+                pending.remove(future);
+            }
+
+            FileResult<T> result;
+            try {
+                result = future.get();
+            } catch (ExecutionException e) {
+                // exceptions are caught by the task
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            if (result.exception != null) {
+                failures.put(result.file, result.exception);
+            } else {
+                processedCount++;
+                consumer.accept(result.value);
+            }
+            return true;
+        }
+    }
+
+    private static class FileResult<T> {
+        private final Path file;
+        private final T value;
+        private final Exception exception;
+
+        private FileResult(Path file, T value, Exception exception) {
+            this.file = file;
+            this.value = value;
+            this.exception = exception;
+        }
+    }
 }
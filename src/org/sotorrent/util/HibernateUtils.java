@@ -1,11 +1,40 @@
 package org.sotorrent.util;
 
 import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.Query;
+import org.sotorrent.util.exceptions.BatchedOperationException;
 
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class HibernateUtils {
+    static final int MIN_IN_LIST_SIZE = 8;
+    static final int MAX_IN_LIST_SIZE = 512; // power of two below common limits, e.g., 1000 in Oracle
+
+    // shared by all streams, idle threads terminate, thus streams that are not closed do not leak threads
+    private static final ExecutorService prefetcher = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "KeysetChunkPrefetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public static void insertList(StatelessSession session, List list) {
         for (Object element : list) {
             session.insert(element);
@@ -18,6 +47,381 @@ public class HibernateUtils {
         }
     }
 
+    /**
+     * Same as {@link #insertList(StatelessSession, List)}, but the inserts are sent in JDBC batches of batchSize
+     * statements and committed in separate transactions of chunkSize elements. Thus, the session must not have an
+     * active transaction. Insert batching requires that the ids are not generated by the database (identity columns).
+     * @return one entry per committed chunk
+     * @throws BatchedOperationException if a chunk fails, with the number of elements committed before
+     */
+    public static List<ChunkStatistics> insertListBatched(StatelessSession session, List<?> list,
+                                                          int batchSize, int chunkSize) {
+        return processListBatched(session, list, batchSize, chunkSize, StatelessSession::insert);
+    }
+
+    /**
+     * Same as {@link #updateList(StatelessSession, List)}, but batched like
+     * {@link #insertListBatched(StatelessSession, List, int, int)}.
+     * @return one entry per committed chunk
+     * @throws BatchedOperationException if a chunk fails, with the number of elements committed before
+     */
+    public static List<ChunkStatistics> updateListBatched(StatelessSession session, List<?> list,
+                                                          int batchSize, int chunkSize) {
+        return processListBatched(session, list, batchSize, chunkSize, StatelessSession::update);
+    }
+
+    private static List<ChunkStatistics> processListBatched(StatelessSession session, List<?> list,
+                                                            int batchSize, int chunkSize,
+                                                            BiConsumer<StatelessSession, Object> operation) {
+        if (batchSize < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Batch size and chunk size must be positive.");
+        }
+        if (session.getTransaction().isActive()) {
+            throw new IllegalStateException("Batched operations commit their own transactions.");
+        }
+
+        List<ChunkStatistics> statistics = new ArrayList<>();
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try {
+            for (int chunkStart = 0; chunkStart < list.size(); chunkStart += chunkSize) {
+                int chunkEnd = Math.min(list.size(), chunkStart + chunkSize);
+                long startTime = System.nanoTime();
+                Transaction transaction = session.beginTransaction();
+                try {
+                    for (int i = chunkStart; i < chunkEnd; i++) {
+                        operation.accept(session, list.get(i));
+                    }
+                    transaction.commit(); // executes the last (partial) batch
+                } catch (RuntimeException e) {
+                    if (transaction.isActive()) {
+                        transaction.rollback();
+                    }
+                    throw new BatchedOperationException(chunkStart, new ArrayList<>(statistics), e);
+                }
+                statistics.add(new ChunkStatistics(statistics.size(), chunkEnd - chunkStart, System.nanoTime() - startTime));
+            }
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+        return statistics;
+    }
+
+    /**
+     * Read all entities of a table in chunks of chunkSize entities ordered by id, using keyset pagination
+     * (where id > last id of the previous chunk), such that only the current (and the prefetched) chunk is kept in
+     * memory. Unlike offset pagination, the cost per chunk does not grow with the position in the table.
+     * The session must not be used otherwise until the stream has been consumed or closed.
+     * @param idProperty name of the (single-column, unique) id property
+     * @param idGetter returns the value of the id property of an entity
+     * @param prefetch if true, the next chunk is read on a background thread while the current one is processed
+     * @return sequential stream of non-empty chunks, which should be closed if it is not consumed completely
+     */
+    public static <T> Stream<List<T>> streamChunks(StatelessSession session, Class<T> entityClass, String idProperty,
+                                                   Function<? super T, ?> idGetter, int chunkSize, boolean prefetch) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        KeysetChunkSpliterator<T> spliterator = new KeysetChunkSpliterator<>(session, entityClass, idProperty,
+                idGetter, chunkSize, prefetch);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * Same as {@link #streamChunks(StatelessSession, Class, String, Function, int, boolean)}, but passes the chunks
+     * to a consumer.
+     */
+    public static <T> void forEachChunk(StatelessSession session, Class<T> entityClass, String idProperty,
+                                        Function<? super T, ?> idGetter, int chunkSize, boolean prefetch,
+                                        Consumer<List<T>> consumer) {
+        try (Stream<List<T>> chunks = streamChunks(session, entityClass, idProperty, idGetter, chunkSize, prefetch)) {
+            chunks.forEach(consumer);
+        }
+    }
+
+    private static class KeysetChunkSpliterator<T> extends Spliterators.AbstractSpliterator<List<T>> {
+        private final StatelessSession session;
+        private final Class<T> entityClass;
+        private final String firstChunkQuery;
+        private final String nextChunkQuery;
+        private final Function<? super T, ?> idGetter;
+        private final int chunkSize;
+        private final boolean prefetch;
+        private Future<List<T>> prefetchedChunk = null;
+        private Object lastId = null;
+        private boolean exhausted = false;
+
+        private KeysetChunkSpliterator(StatelessSession session, Class<T> entityClass, String idProperty,
+                                       Function<? super T, ?> idGetter, int chunkSize, boolean prefetch) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.session = session;
+            this.entityClass = entityClass;
+            this.firstChunkQuery = "from " + entityClass.getName() + " e order by e." + idProperty;
+            this.nextChunkQuery = "from " + entityClass.getName() + " e where e." + idProperty + " > :lastId"
+                    + " order by e." + idProperty;
+            this.idGetter = idGetter;
+            this.chunkSize = chunkSize;
+            this.prefetch = prefetch;
+        }
+
+        private List<T> readChunk(Object lastId) {
+            Query<T> query = lastId == null
+                    ? session.createQuery(firstChunkQuery, entityClass)
+                    : session.createQuery(nextChunkQuery, entityClass).setParameter("lastId", lastId);
+            return query.setMaxResults(chunkSize).list();
+        }
+
+        private List<T> nextChunk() {
+            if (prefetchedChunk == null) {
+                return readChunk(lastId);
+            }
+            try {
+                return prefetchedChunk.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading chunk.", e);
+            } finally {
+                prefetchedChunk = null;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super List<T>> action) {
+            if (exhausted) {
+                return false;
+            }
+
+            List<T> chunk = nextChunk();
+            if (chunk.isEmpty()) {
+                close();
+                return false;
+            }
+            lastId = idGetter.apply(chunk.get(chunk.size() - 1));
+            if (chunk.size() < chunkSize) {
+                close(); // last chunk
+            } else if (prefetch) {
+                Object id = lastId;
+                prefetchedChunk = prefetcher.submit(() -> readChunk(id));
+            }
+
+            action.accept(chunk);
+            return true;
+        }
+
+        private void close() {
+            exhausted = true;
+            if (prefetchedChunk != null) {
+                // wait for a running prefetch, the session may be used again after the stream has been closed
+                try {
+                    prefetchedChunk.get();
+                } catch (ExecutionException e) {
+                    // chunk is discarded
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                prefetchedChunk = null;
+            }
+        }
+    }
+
+    public static class ChunkStatistics implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int chunkIndex;
+        private final int rowCount;
+        private final long durationNanos;
+
+        private ChunkStatistics(int chunkIndex, int rowCount, long durationNanos) {
+            this.chunkIndex = chunkIndex;
+            this.rowCount = rowCount;
+            this.durationNanos = durationNanos;
+        }
+
+        public int getChunkIndex() {
+            return chunkIndex;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @return time from the beginning of the transaction until its commit
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return durationNanos == 0 ? 0 : rowCount * 1e9 / durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk " + chunkIndex + ": " + rowCount + " rows in "
+                    + String.format("%.1f", durationNanos / 1e6) + "ms";
+        }
+    }
+
+    /**
+     * Execute a query with an IN list parameter for a set of ids, e.g.,
+     * "from Post p where p.id in (:ids)". The ids are sorted, deduplicated, and bound as parameters in chunks of at
+     * most MAX_IN_LIST_SIZE ids, thus very large id sets result in multiple queries. Each chunk is padded to the next
+     * power of two by repeating its last id, such that only a few distinct statements are prepared and the query
+     * plans and prepared statements can be reused.
+     * @param idsParameter name of the parameter list in the query
+     * @return results of all chunks (a result may appear more than once if the query can return it for different ids)
+     */
+    public static <T> List<T> listByIds(StatelessSession session, String hql, Class<T> resultClass,
+                                        String idsParameter, long[] ids) {
+        return listByIds(session, hql, resultClass, idsParameter, ids, query -> { });
+    }
+
+    /**
+     * Same as {@link #listByIds(StatelessSession, String, Class, String, long[])} for queries with further
+     * parameters, e.g., "from PostVersion v where v.postId in (:ids) and v.postTypeId = :type".
+     * @param parameterBinder binds the other parameters of the query, called once per chunk
+     */
+    public static <T> List<T> listByIds(StatelessSession session, String hql, Class<T> resultClass,
+                                        String idsParameter, long[] ids, Consumer<Query<?>> parameterBinder) {
+        List<T> results = new ArrayList<>();
+        forEachChunkByIds(session, hql, resultClass, idsParameter, ids, parameterBinder, results::addAll);
+        return results;
+    }
+
+    /**
+     * Same as {@link #listByIds(StatelessSession, String, Class, String, long[])} for int ids (e.g., post ids),
+     * which are bound as Integer parameters.
+     */
+    public static <T> List<T> listByIds(StatelessSession session, String hql, Class<T> resultClass,
+                                        String idsParameter, int[] ids) {
+        return listByIds(session, hql, resultClass, idsParameter, ids, query -> { });
+    }
+
+    public static <T> List<T> listByIds(StatelessSession session, String hql, Class<T> resultClass,
+                                        String idsParameter, int[] ids, Consumer<Query<?>> parameterBinder) {
+        List<T> results = new ArrayList<>();
+        forEachChunkByIds(session, hql, resultClass, idsParameter, ids, parameterBinder, results::addAll);
+        return results;
+    }
+
+    /**
+     * Same as {@link #listByIds(StatelessSession, String, Class, String, long[])}, but passes the results of each
+     * chunk to a consumer instead of collecting them, such that the memory usage does not depend on the result size.
+     */
+    public static <T> void forEachChunkByIds(StatelessSession session, String hql, Class<T> resultClass,
+                                             String idsParameter, long[] ids, Consumer<List<T>> consumer) {
+        forEachChunkByIds(session, hql, resultClass, idsParameter, ids, query -> { }, consumer);
+    }
+
+    /**
+     * Same as {@link #forEachChunkByIds(StatelessSession, String, Class, String, long[], Consumer)} for queries with
+     * further parameters, which are bound by parameterBinder (see
+     * {@link #listByIds(StatelessSession, String, Class, String, long[], Consumer)}).
+     */
+    public static <T> void forEachChunkByIds(StatelessSession session, String hql, Class<T> resultClass,
+                                             String idsParameter, long[] ids, Consumer<Query<?>> parameterBinder,
+                                             Consumer<List<T>> consumer) {
+        long[] sortedIds = sortedDistinct(ids);
+        forEachIdChunk(session, hql, resultClass, idsParameter, sortedIds.length,
+                (start, length) -> new BoxedIdList(length, i -> sortedIds[start + i]), parameterBinder, consumer);
+    }
+
+    public static <T> void forEachChunkByIds(StatelessSession session, String hql, Class<T> resultClass,
+                                             String idsParameter, int[] ids, Consumer<List<T>> consumer) {
+        forEachChunkByIds(session, hql, resultClass, idsParameter, ids, query -> { }, consumer);
+    }
+
+    public static <T> void forEachChunkByIds(StatelessSession session, String hql, Class<T> resultClass,
+                                             String idsParameter, int[] ids, Consumer<Query<?>> parameterBinder,
+                                             Consumer<List<T>> consumer) {
+        int[] sortedIds = sortedDistinct(ids);
+        forEachIdChunk(session, hql, resultClass, idsParameter, sortedIds.length,
+                (start, length) -> new BoxedIdList(length, i -> sortedIds[start + i]), parameterBinder, consumer);
+    }
+
+    // sorted ids improve index locality and make the chunks independent of the input order
+
+    private static long[] sortedDistinct(long[] ids) {
+        long[] sortedIds = ids.clone();
+        Arrays.sort(sortedIds);
+        int distinctCount = 0;
+        for (int i = 0; i < sortedIds.length; i++) {
+            if (i == 0 || sortedIds[i] != sortedIds[i - 1]) {
+                sortedIds[distinctCount++] = sortedIds[i];
+            }
+        }
+        return Arrays.copyOf(sortedIds, distinctCount);
+    }
+
+    private static int[] sortedDistinct(int[] ids) {
+        int[] sortedIds = ids.clone();
+        Arrays.sort(sortedIds);
+        int distinctCount = 0;
+        for (int i = 0; i < sortedIds.length; i++) {
+            if (i == 0 || sortedIds[i] != sortedIds[i - 1]) {
+                sortedIds[distinctCount++] = sortedIds[i];
+            }
+        }
+        return Arrays.copyOf(sortedIds, distinctCount);
+    }
+
+    private interface IdChunkFactory {
+        List<?> create(int start, int length);
+    }
+
+    private static <T> void forEachIdChunk(StatelessSession session, String hql, Class<T> resultClass,
+                                           String idsParameter, int idCount, IdChunkFactory chunkFactory,
+                                           Consumer<Query<?>> parameterBinder, Consumer<List<T>> consumer) {
+        for (int start = 0; start < idCount; start += MAX_IN_LIST_SIZE) {
+            int length = Math.min(MAX_IN_LIST_SIZE, idCount - start);
+            Query<T> query = session.createQuery(hql, resultClass)
+                    .setParameterList(idsParameter, chunkFactory.create(start, length));
+            parameterBinder.accept(query);
+            consumer.accept(query.list());
+        }
+    }
+
+    /**
+     * @return smallest power of two that is at least idCount and MIN_IN_LIST_SIZE
+     */
+    static int inListSize(int idCount) {
+        return Math.max(MIN_IN_LIST_SIZE, Integer.highestOneBit(Math.max(1, idCount - 1)) << 1);
+    }
+
+    // list of boxed ids, padded to the bucketed IN list size by repeating the last id
+    private static class BoxedIdList extends AbstractList<Object> {
+        private final int length;
+        private final int paddedLength;
+        private final IntFunction<Object> id;
+
+        private BoxedIdList(int length, IntFunction<Object> id) {
+            this.length = length;
+            this.paddedLength = inListSize(length);
+            this.id = id;
+        }
+
+        @Override
+        public Object get(int index) {
+            return id.apply(Math.min(index, length - 1));
+        }
+
+        @Override
+        public int size() {
+            return paddedLength;
+        }
+    }
+
+    /**
+     * @deprecated builds literal SQL, which defeats statement caching, use
+     * {@link #listByIds(StatelessSession, String, Class, String, int[])} instead
+     */
+    @Deprecated
     public static String setToQueryString(Set<Byte> valueSet) {
         // convert set into array
         Byte[] values = new Byte[valueSet.size()];
@@ -0,0 +1,224 @@
+package org.sotorrent.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns labels such as "Stack Exchange", "GitHub", or "Documentation" to URLs based on a configurable set of rules.
+ * A rule is either a domain (e.g., stackoverflow.com), which matches the domain and all its subdomains, or a domain
+ * followed by a path prefix (e.g., docs.oracle.com/javase/), which additionally requires the path to start with the
+ * given prefix. If several rules match, the one with the longest domain wins, and for the same domain the one with
+ * the longest path prefix.
+ * All rules are compiled into one automaton over the reversed host followed by the path, thus the time to classify a
+ * URL does not depend on the number of rules. The host is walked once, and the path is walked once for each matching
+ * domain that has path rules (e.g., twice for docs.oracle.com and oracle.com if both have path rules), thus the time
+ * is O(host length + d * path length), where d is the number of such domains (usually at most one).
+ * Hosts are compared case-insensitively, paths case-sensitively.
+ * @param <L> type of the labels
+ */
+public class HostClassifier<L> {
+    private static final int ROOT = 0;
+    private static final char PATH_SEPARATOR = '/'; // cannot occur in hosts
+
+    private final List<L> labels = new ArrayList<>();
+
+    // label index of the domain rule ending in a node, or of the path rule ending in a node, -1 if none
+    private int nodeCount = 1;
+    private int[] domainLabels = new int[256];
+    private int[] pathLabels = new int[256];
+
+    // open-addressing hash table mapping (node, character) to the child node, 0 marks empty slots
+    private long[] transitionKeys = new long[512];
+    private int[] transitionTargets = new int[512];
+
+    /**
+     * @param rules map from rules (domain or domain followed by a slash and a path prefix) to labels
+     */
+    public HostClassifier(Map<String, L> rules) {
+        Arrays.fill(domainLabels, -1);
+        Arrays.fill(pathLabels, -1);
+        for (Map.Entry<String, L> rule : rules.entrySet()) {
+            addRule(rule.getKey(), rule.getValue());
+        }
+    }
+
+    private void addRule(String rule, L label) {
+        int pathSeparator = rule.indexOf(PATH_SEPARATOR);
+        String domain = pathSeparator < 0 ? rule : rule.substring(0, pathSeparator);
+        String pathPrefix = pathSeparator < 0 ? "" : rule.substring(pathSeparator + 1);
+        if (domain.isEmpty()) {
+            throw new IllegalArgumentException("Rule without domain: " + rule);
+        }
+
+        int labelIndex = labels.size();
+        labels.add(label);
+
+        int node = ROOT;
+        for (int i = domain.length() - 1; i >= 0; i--) {
+            node = getOrAddChild(node, toLowerCase(domain.charAt(i)));
+        }
+        if (pathPrefix.isEmpty()) {
+            domainLabels[node] = labelIndex;
+            return;
+        }
+
+        node = getOrAddChild(node, PATH_SEPARATOR);
+        for (int i = 0; i < pathPrefix.length(); i++) {
+            node = getOrAddChild(node, pathPrefix.charAt(i));
+        }
+        pathLabels[node] = labelIndex;
+    }
+
+    private int getOrAddChild(int node, char c) {
+        int child = getChild(node, c);
+        if (child >= 0) {
+            return child;
+        }
+
+        if (nodeCount == domainLabels.length) {
+            int capacity = domainLabels.length * 2;
+            domainLabels = Arrays.copyOf(domainLabels, capacity);
+            pathLabels = Arrays.copyOf(pathLabels, capacity);
+            Arrays.fill(domainLabels, nodeCount, capacity, -1);
+            Arrays.fill(pathLabels, nodeCount, capacity, -1);
+        }
+        child = nodeCount++;
+
+        // keep load factor below 0.5
+        if (nodeCount * 2 > transitionKeys.length) {
+            long[] keys = transitionKeys;
+            int[] targets = transitionTargets;
+            transitionKeys = new long[keys.length * 2];
+            transitionTargets = new int[keys.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    insertTransition(keys[i], targets[i]);
+                }
+            }
+        }
+        insertTransition(transitionKey(node, c), child);
+        return child;
+    }
+
+    private void insertTransition(long key, int target) {
+        int mask = transitionKeys.length - 1;
+        int i = hash(key) & mask;
+        while (transitionKeys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        transitionKeys[i] = key;
+        transitionTargets[i] = target;
+    }
+
+    private int getChild(int node, char c) {
+        long key = transitionKey(node, c);
+        int mask = transitionKeys.length - 1;
+        int i = hash(key) & mask;
+        long slotKey;
+        while ((slotKey = transitionKeys[i]) != 0) {
+            if (slotKey == key) {
+                return transitionTargets[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static long transitionKey(int node, char c) {
+        // +1 to distinguish the key of (ROOT, '\0') from empty slots
+        return (((long) node << 16) | c) + 1;
+    }
+
+    private static int hash(long key) {
+        // finalization step of MurmurHash3 (64 bit)
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    public L classify(URL url) {
+        if (url.isEmpty()) {
+            return null;
+        }
+        String host = url.getCompleteDomain();
+        String path = url.getPath();
+        return path == null
+                ? classify(host, 0, host.length(), -1, -1)
+                : classify(host, 0, host.length(), path, 0, path.length());
+    }
+
+    public L classify(URLView view) {
+        if (view.isEmpty()) {
+            return null;
+        }
+        int pathStart = view.getPathStart();
+        return classify(view.getSource(), view.getHostStart(), view.getHostEnd(),
+                pathStart < 0 ? -1 : pathStart + 1, view.getPathEnd()); // skip leading slash
+    }
+
+    /**
+     * Classify a host without considering path rules.
+     */
+    public L classifyHost(CharSequence host) {
+        return classify(host, 0, host.length(), -1, -1);
+    }
+
+    /**
+     * Classify a host and path located in the same char sequence.
+     * @param pathStart start of the path without leading slash or -1 if there is no path
+     */
+    public L classify(CharSequence s, int hostStart, int hostEnd, int pathStart, int pathEnd) {
+        return classify(s, hostStart, hostEnd, s, pathStart, pathEnd);
+    }
+
+    private L classify(CharSequence host, int hostStart, int hostEnd, CharSequence path, int pathStart, int pathEnd) {
+        int result = -1;
+        int node = ROOT;
+        for (int i = hostEnd - 1; i >= hostStart && node >= 0; i--) {
+            node = getChild(node, toLowerCase(host.charAt(i)));
+            if (node < 0 || (i > hostStart && host.charAt(i - 1) != '.')) {
+                continue; // not at a label boundary
+            }
+
+            // longer domains override shorter ones, path rules override domain rules of the same domain
+            int label = domainLabels[node];
+            if (pathStart >= 0) {
+                // returns immediately if the domain has no path rules
+                int pathLabel = classifyPath(node, path, pathStart, pathEnd);
+                if (pathLabel >= 0) {
+                    label = pathLabel;
+                }
+            }
+            if (label >= 0) {
+                result = label;
+            }
+        }
+        return result < 0 ? null : labels.get(result);
+    }
+
+    private int classifyPath(int domainNode, CharSequence path, int pathStart, int pathEnd) {
+        int node = getChild(domainNode, PATH_SEPARATOR);
+        int result = -1;
+        for (int i = pathStart; i < pathEnd && node >= 0; i++) {
+            node = getChild(node, path.charAt(i));
+            if (node >= 0 && pathLabels[node] >= 0) {
+                result = pathLabels[node]; // longest prefix wins
+            }
+        }
+        // URL.getPath() removes the trailing slash, which prefixes such as javase/8/docs/api/ end with
+        if (node >= 0) {
+            node = getChild(node, '/');
+            if (node >= 0 && pathLabels[node] >= 0) {
+                result = pathLabels[node];
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,385 @@
+package org.sotorrent.util;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Schedules requests of an {@link AsyncHttpClient} with one token bucket per host, such that link checks do not
+ * exceed the rate limits of the linked sites. If a host responds with "429 Too Many Requests" (or "403 Forbidden"
+ * with a Retry-After header), requests to that host are paused for the duration given in the Retry-After header
+ * (exponential backoff without header), its request rate is halved, and the request is retried. The rate recovers
+ * additively with each successful request. Requests to hosts that are not throttled are sent in the meantime.
+ * Dispatching only visits hosts with queued requests whose next token is due, thus its cost does not depend on the
+ * number of hosts. The requests are sent on a separate thread, such that send(...) never blocks.
+ * If a request is still throttled after maxRetries retries, the future completes with the last response, thus
+ * callers can check {@link HttpUtils#tooManyRequests(HttpResponse)} as before.
+ */
+public class HostRateLimiter implements HttpRequestSender, AutoCloseable {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long INITIAL_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final AsyncHttpClient client;
+    private final double requestsPerSecond;
+    private final double burst;
+    private final int maxRetries;
+
+    // guarded by this
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final Deque<Host> readyHosts = new ArrayDeque<>(); // hosts with queued requests that may have a token
+    private final PriorityQueue<Wakeup> wakeups = new PriorityQueue<>((w1, w2) -> Long.signum(w1.time - w2.time));
+    private long scheduledWakeup = Long.MAX_VALUE;
+
+    // requests are sent on a separate thread, because AsyncHttpClient.send(...) blocks while its queue is full
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean(false);
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HostRateLimiter-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HostRateLimiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param requestsPerSecond maximum rate of requests per host
+     * @param burst number of requests per host that may be sent at once after a pause
+     * @param maxRetries maximum number of retries of a throttled request
+     */
+    public HostRateLimiter(AsyncHttpClient client, double requestsPerSecond, int burst, int maxRetries) {
+        if (requestsPerSecond <= 0 || burst < 1 || maxRetries < 0) {
+            throw new IllegalArgumentException("Invalid rate limit configuration.");
+        }
+        this.client = client;
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Same as {@link AsyncHttpClient#send(String, String, Map)}, but the request is sent as soon as the rate limit of its
+     * host permits. Does not block.
+     */
+    @Override
+    public CompletableFuture<HttpResponse<Void>> send(String url, String requestMethod, Map<String, String> headers) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Protocol is not http."));
+        }
+        if (uri.getHost() == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("URL without host: " + url));
+        }
+
+        Request request = new Request(url, requestMethod, headers);
+        synchronized (this) {
+            Host host = hosts.computeIfAbsent(uri.getHost().toLowerCase(), Host::new);
+            host.queue.addLast(request);
+            if (host.wakeup == null || host.wakeup.idle) {
+                setReady(host);
+            }
+        }
+        requestDispatch();
+        return request.result;
+    }
+
+    private void requestDispatch() {
+        // coalesces the dispatch requests of concurrent sends and responses
+        if (dispatchRequested.compareAndSet(false, true)) {
+            try {
+                sender.execute(this::dispatch);
+            } catch (RejectedExecutionException e) {
+                dispatchRequested.set(false); // closed
+            }
+        }
+    }
+
+    // only called on the sender thread
+    private void dispatch() {
+        dispatchRequested.set(false);
+        List<Host> sendHosts = new ArrayList<>();
+        List<Request> sendRequests = new ArrayList<>();
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            Wakeup wakeup;
+            while ((wakeup = wakeups.peek()) != null && wakeup.time - now <= 0) {
+                wakeups.poll();
+                Host host = wakeup.host;
+                if (host.wakeup != wakeup) {
+                    continue; // superseded
+                }
+                host.wakeup = null;
+                if (host.queue.isEmpty()) {
+                    release(host, now);
+                } else {
+                    setReady(host);
+                }
+            }
+
+            // only hosts with queued requests are visited, hosts are served round-robin
+            Host host;
+            while ((host = readyHosts.pollFirst()) != null) {
+                host.ready = false;
+                if (host.queue.isEmpty()) {
+                    release(host, now);
+                    continue;
+                }
+                long waitNanos = host.acquire(now);
+                if (waitNanos > 0) {
+                    // requests to other hosts are sent in the meantime
+                    schedule(host, now + waitNanos, false);
+                    continue;
+                }
+                host.runningRequests++;
+                sendHosts.add(host);
+                sendRequests.add(host.queue.pollFirst());
+                if (!host.queue.isEmpty()) {
+                    setReady(host);
+                }
+            }
+
+            Wakeup nextWakeup = wakeups.peek();
+            if (nextWakeup != null
+                    && (scheduledWakeup == Long.MAX_VALUE || nextWakeup.time - scheduledWakeup < 0)) {
+                scheduledWakeup = nextWakeup.time;
+                timer.schedule(this::wakeUp, nextWakeup.time - now, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // send outside of the lock, the client may block or complete requests synchronously
+        for (int i = 0; i < sendRequests.size(); i++) {
+            Host host = sendHosts.get(i);
+            Request request = sendRequests.get(i);
+            client.send(request.url, request.requestMethod, request.headers)
+                    .whenComplete((response, e) -> onResponse(host, request, response, e));
+        }
+    }
+
+    private void setReady(Host host) {
+        host.wakeup = null; // supersedes a scheduled wakeup
+        if (!host.ready) {
+            host.ready = true;
+            readyHosts.addLast(host);
+        }
+    }
+
+    private void schedule(Host host, long time, boolean idle) {
+        host.wakeup = new Wakeup(host, time, idle);
+        wakeups.add(host.wakeup);
+    }
+
+    /**
+     * Drop a host without queued and running requests once its state equals the initial state.
+     */
+    private void release(Host host, long now) {
+        if (!host.queue.isEmpty() || host.runningRequests > 0 || host.ready || host.wakeup != null) {
+            return;
+        }
+        if (host.isIdle(now)) {
+            hosts.remove(host.name);
+        } else if (host.rate >= requestsPerSecond) {
+            schedule(host, host.idleAt(), true);
+        }
+        // otherwise, the reduced rate of a throttled host is kept
+    }
+
+    private void wakeUp() {
+        synchronized (this) {
+            scheduledWakeup = Long.MAX_VALUE;
+        }
+        requestDispatch();
+    }
+
+    private void onResponse(Host host, Request request, HttpResponse<Void> response, Throwable e) {
+        boolean retry = false;
+        synchronized (this) {
+            long now = System.nanoTime();
+            host.runningRequests--;
+            if (e == null) {
+                if (throttled(response)) {
+                    host.throttle(now, response);
+                    if (request.retries < maxRetries) {
+                        request.retries++;
+                        retry = true;
+                        host.queue.addFirst(request);
+                        if (host.wakeup == null || host.wakeup.idle) {
+                            setReady(host);
+                        }
+                    }
+                } else {
+                    host.recover();
+                }
+            }
+            release(host, now);
+        }
+
+        if (!retry) {
+            if (e != null) {
+                request.result.completeExceptionally(e);
+            } else {
+                request.result.complete(response);
+            }
+        }
+        requestDispatch();
+    }
+
+    private static boolean throttled(HttpResponse<?> response) {
+        return HttpUtils.tooManyRequests(response)
+                || (response.statusCode() == 403 && response.headers().firstValue("Retry-After").isPresent());
+    }
+
+    /**
+     * @param value value of a Retry-After header, either a number of seconds or an HTTP date
+     * @return delay in milliseconds or -1 if the value is invalid
+     */
+    static long parseRetryAfter(String value, long currentTimeMillis) {
+        value = value.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // try HTTP date
+        }
+        try {
+            long dateMillis = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, dateMillis - currentTimeMillis);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return number of requests waiting for their host's rate limit
+     */
+    public synchronized int getQueuedRequestCount() {
+        int count = 0;
+        for (Host host : hosts.values()) {
+            count += host.queue.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    private static class Request {
+        private final String url;
+        private final String requestMethod;
+        private final Map<String, String> headers;
+        private final CompletableFuture<HttpResponse<Void>> result = new CompletableFuture<>();
+        private int retries = 0;
+
+        private Request(String url, String requestMethod, Map<String, String> headers) {
+            this.url = url;
+            this.requestMethod = requestMethod;
+            this.headers = headers;
+        }
+    }
+
+    private static class Wakeup {
+        private final Host host;
+        private final long time;
+        private final boolean idle; // the host becomes idle rather than receiving a token
+
+        private Wakeup(Host host, long time, boolean idle) {
+            this.host = host;
+            this.time = time;
+            this.idle = idle;
+        }
+    }
+
+    // state of the token bucket of one host, guarded by the enclosing limiter
+    private class Host {
+        private final String name;
+        private final Deque<Request> queue = new ArrayDeque<>();
+        private double rate = requestsPerSecond;
+        private double tokens = burst;
+        private long lastRefill = System.nanoTime();
+        private long blockedUntil = lastRefill; // nanoTime values may only be compared by their difference
+        private long backoffNanos = INITIAL_BACKOFF_NANOS;
+        private int runningRequests = 0;
+        private boolean ready = false; // in readyHosts
+        private Wakeup wakeup = null; // latest entry in wakeups, earlier entries of the host are ignored
+
+        private Host(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the time in nanoseconds until the next token is available
+         */
+        private long acquire(long now) {
+            if (now - blockedUntil < 0) {
+                return blockedUntil - now;
+            }
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / NANOS_PER_SECOND);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / rate * NANOS_PER_SECOND));
+        }
+
+        private void throttle(long now, HttpResponse<?> response) {
+            if (now - blockedUntil < 0) {
+                return; // concurrent requests throttled by the same block
+            }
+            long delayNanos = response.headers().firstValue("Retry-After")
+                    .map(value -> parseRetryAfter(value, System.currentTimeMillis()))
+                    .filter(delay -> delay >= 0)
+                    .map(TimeUnit.MILLISECONDS::toNanos)
+                    .orElse(backoffNanos);
+            backoffNanos = Math.min(MAX_BACKOFF_NANOS, backoffNanos * 2);
+            blockedUntil = now + Math.min(MAX_BACKOFF_NANOS, delayNanos);
+            rate = Math.max(requestsPerSecond / 64, rate / 2);
+            tokens = 0;
+            lastRefill = blockedUntil;
+        }
+
+        private void recover() {
+            backoffNanos = INITIAL_BACKOFF_NANOS;
+            rate = Math.min(requestsPerSecond, rate + requestsPerSecond / 16);
+        }
+
+        /**
+         * @return time at which the bucket is full again and the block has ended
+         */
+        private long idleAt() {
+            long fullAt = lastRefill + Math.max(1, (long) Math.ceil((burst - tokens) / rate * NANOS_PER_SECOND));
+            return fullAt - blockedUntil < 0 ? blockedUntil : fullAt;
+        }
+
+        private boolean isIdle(long now) {
+            // state of idle hosts equals the initial state, thus it can be dropped
+            return queue.isEmpty() && runningRequests == 0 && now - blockedUntil >= 0 && rate >= requestsPerSecond
+                    && tokens + (now - lastRefill) * rate / NANOS_PER_SECOND >= burst;
+        }
+    }
+}
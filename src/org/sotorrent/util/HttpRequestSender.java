@@ -0,0 +1,26 @@
+package org.sotorrent.util;
+
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Common interface of {@link AsyncHttpClient} and {@link HostRateLimiter}, such that link checks can be composed
+ * with and without rate limiting.
+ */
+public interface HttpRequestSender {
+    /**
+     * Send a request without body and discard the response body.
+     * @param requestMethod e.g., HEAD or GET
+     * @return future that completes exceptionally if the URL is not an http(s) URL or the request fails
+     */
+    default CompletableFuture<HttpResponse<Void>> send(String url, String requestMethod) {
+        return send(url, requestMethod, Collections.emptyMap());
+    }
+
+    /**
+     * @param headers additional request headers, e.g., for conditional requests
+     */
+    CompletableFuture<HttpResponse<Void>> send(String url, String requestMethod, Map<String, String> headers);
+}
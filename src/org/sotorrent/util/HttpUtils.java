@@ -2,10 +2,19 @@ package org.sotorrent.util;
 
 import javax.net.ssl.HttpsURLConnection;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class HttpUtils {
+    // some API return a "403 Forbidden" if no user agent is specified
+    static final String USER_AGENT = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10.13; rv:10.0) Gecko/20100101 Firefox/10.0";
+
     public static HttpURLConnection openHttpConnection(String url,
                                                        String requestMethod,
                                                        boolean followRedirects,
@@ -22,8 +31,7 @@ public class HttpUtils {
             throw new IllegalArgumentException("Protocol is not http.");
         }
 
-        // some API return a "403 Forbidden" if no user agent is specified
-        conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10.13; rv:10.0) Gecko/20100101 Firefox/10.0");
+        conn.setRequestProperty("User-Agent", USER_AGENT);
         conn.setInstanceFollowRedirects(followRedirects);
         conn.setConnectTimeout(connectTimeout);
         conn.setReadTimeout(readTimeout);
@@ -37,8 +45,7 @@ public class HttpUtils {
     public static boolean success(HttpURLConnection conn)  {
         boolean success;
         try {
-            // see https://en.wikipedia.org/wiki/List_of_HTTP_status_codes#2xx_Success
-            success = (conn.getResponseCode() >= 200 && conn.getResponseCode() <= 226);
+            success = success(conn.getResponseCode());
         } catch (IOException e) {
             success = false;
         }
@@ -48,8 +55,7 @@ public class HttpUtils {
     public static boolean redirect(HttpURLConnection conn)  {
         boolean redirect;
         try {
-            // see https://en.wikipedia.org/wiki/List_of_HTTP_status_codes#3xx_Redirection
-            redirect = (conn.getResponseCode() >= 300 && conn.getResponseCode() <= 308);
+            redirect = redirect(conn.getResponseCode());
         } catch (IOException e) {
             redirect = false;
         }
@@ -59,10 +65,93 @@ public class HttpUtils {
     public static boolean tooManyRequests(HttpURLConnection conn) {
         boolean tooManyRequests;
         try {
-            tooManyRequests = (conn.getResponseCode() == 429);  // may also be 403
+            tooManyRequests = tooManyRequests(conn.getResponseCode());
         } catch (IOException e) {
             tooManyRequests = false;
         }
         return tooManyRequests;
     }
+
+    public static boolean success(HttpResponse<?> response) {
+        return success(response.statusCode());
+    }
+
+    public static boolean redirect(HttpResponse<?> response) {
+        return redirect(response.statusCode());
+    }
+
+    public static boolean tooManyRequests(HttpResponse<?> response) {
+        return tooManyRequests(response.statusCode());
+    }
+
+    public static boolean success(int responseCode) {
+        // see https://en.wikipedia.org/wiki/List_of_HTTP_status_codes#2xx_Success
+        return responseCode >= 200 && responseCode <= 226;
+    }
+
+    public static boolean redirect(int responseCode) {
+        // see https://en.wikipedia.org/wiki/List_of_HTTP_status_codes#3xx_Redirection
+        return responseCode >= 300 && responseCode <= 308;
+    }
+
+    public static boolean tooManyRequests(int responseCode) {
+        return responseCode == 429;  // may also be 403
+    }
+
+    /**
+     * @return true if the status may change when the request is repeated, e.g., 429 or 503
+     */
+    static boolean transientFailure(int responseCode) {
+        return tooManyRequests(responseCode) || responseCode >= 500;
+    }
+
+    /**
+     * Check a link, but return the stored status if it has been checked within timeToLive. Stale entries are
+     * re-checked with a conditional request (If-None-Match/If-Modified-Since) and only their check time is updated
+     * if the server responds with "304 Not Modified". Transient failures (see {@link #tooManyRequests(int)} and 5xx)
+     * are returned, but not stored.
+     * @param requestMethod e.g., HEAD or GET
+     * @return future that completes exceptionally if the request fails or the status cannot be stored
+     */
+    public static CompletableFuture<LinkStatus> checkLink(HttpRequestSender sender,
+                                                          LinkStatusStore store,
+                                                          String url,
+                                                          String requestMethod,
+                                                          Duration timeToLive) {
+        long fingerprint = LinkStatusStore.fingerprint(url);
+        LinkStatus storedStatus = store.get(fingerprint);
+        if (storedStatus != null && storedStatus.isFresh(timeToLive, System.currentTimeMillis())) {
+            return CompletableFuture.completedFuture(storedStatus);
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        if (storedStatus != null) {
+            if (storedStatus.getETag() != null) {
+                headers.put("If-None-Match", storedStatus.getETag());
+            }
+            if (storedStatus.getLastModified() != null) {
+                headers.put("If-Modified-Since", storedStatus.getLastModified());
+            }
+        }
+
+        return sender.send(url, requestMethod, headers).thenApply(response -> {
+            long checkedAt = System.currentTimeMillis();
+            LinkStatus status;
+            if (response.statusCode() == 304 && storedStatus != null) {
+                status = storedStatus.withCheckedAt(checkedAt);
+            } else {
+                status = new LinkStatus(fingerprint, response.statusCode(), response.uri().toString(), checkedAt,
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null));
+            }
+            if (!transientFailure(status.getStatusCode())) {
+                try {
+                    store.put(status);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return status;
+        });
+    }
 }
@@ -0,0 +1,113 @@
+package org.sotorrent.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Line-aligned byte range of a memory-mapped file (see
+ * {@link FileUtils#processLines(java.nio.file.Path, int, java.util.function.Function)}). Lines end with \n or \r\n,
+ * the line terminator is not part of the line. Lines are passed to callbacks without copying: the buffer or char
+ * sequence is reused for the next line and is only valid during the callback (call toString() to keep a line).
+ * Not thread-safe.
+ */
+public class LineChunk {
+    private final int index;
+    private final long start;
+    private final ByteBuffer buffer;
+
+    private CharsetDecoder decoder;
+    private CharBuffer chars;
+
+    LineChunk(int index, long start, ByteBuffer buffer) {
+        this.index = index;
+        this.start = start;
+        this.buffer = buffer;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return position of the chunk in the file
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return position after the last byte of the chunk
+     */
+    public long getEnd() {
+        return start + buffer.limit();
+    }
+
+    /**
+     * @return read-only view of all bytes of the chunk
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * Pass each line as a read-only buffer whose position and limit enclose the bytes of the line.
+     * @return number of lines
+     */
+    public long forEachLine(Consumer<ByteBuffer> action) {
+        ByteBuffer line = buffer.duplicate();
+        int end = buffer.limit();
+        int lineStart = 0;
+        long lineCount = 0;
+        while (lineStart < end) {
+            int newline = lineStart;
+            while (newline < end && buffer.get(newline) != '\n') {
+                newline++;
+            }
+            int lineEnd = newline;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            line.limit(lineEnd).position(lineStart);
+            action.accept(line);
+            lineCount++;
+            lineStart = newline + 1;
+        }
+        return lineCount;
+    }
+
+    /**
+     * Pass each line decoded as UTF-8, malformed input is replaced with U+FFFD (as by InputStreamReader).
+     * Chunks never split multi-byte characters, because byte 0x0a only occurs as \n in UTF-8.
+     * @return number of lines
+     */
+    public long forEachDecodedLine(Consumer<CharSequence> action) {
+        if (decoder == null) {
+            decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars = CharBuffer.allocate(1024);
+        }
+        return forEachLine(line -> action.accept(decode(line)));
+    }
+
+    private CharBuffer decode(ByteBuffer line) {
+        // UTF-8 never needs more chars than bytes
+        if (chars.capacity() < line.remaining()) {
+            chars = CharBuffer.allocate(Math.max(line.remaining(), chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(line, chars, true);
+        decoder.flush(chars);
+        return chars.flip();
+    }
+
+    @Override
+    public String toString() {
+        return "Chunk " + index + " [" + getStart() + ", " + getEnd() + ")";
+    }
+}
@@ -0,0 +1,72 @@
+package org.sotorrent.util;
+
+import java.time.Duration;
+
+/**
+ * Result of a link check as stored in a {@link LinkStatusStore}.
+ * Absent values (e.g., no ETag) are represented as null.
+ */
+public class LinkStatus {
+    private final long fingerprint;
+    private final int statusCode;
+    private final String finalUrl;
+    private final long checkedAt;
+    private final String eTag;
+    private final String lastModified;
+
+    LinkStatus(long fingerprint, int statusCode, String finalUrl, long checkedAt, String eTag, String lastModified) {
+        this.fingerprint = fingerprint;
+        this.statusCode = statusCode;
+        this.finalUrl = finalUrl;
+        this.checkedAt = checkedAt;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    LinkStatus withCheckedAt(long checkedAt) {
+        return new LinkStatus(fingerprint, statusCode, finalUrl, checkedAt, eTag, lastModified);
+    }
+
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return URL after following redirects (if the client follows redirects)
+     */
+    public String getFinalUrl() {
+        return finalUrl;
+    }
+
+    /**
+     * @return time of the last check in milliseconds since the epoch
+     */
+    public long getCheckedAt() {
+        return checkedAt;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public boolean isFresh(Duration timeToLive, long currentTimeMillis) {
+        return currentTimeMillis - checkedAt < timeToLive.toMillis();
+    }
+
+    public boolean success() {
+        return HttpUtils.success(statusCode);
+    }
+
+    @Override
+    public String toString() {
+        return "LinkStatus{statusCode=" + statusCode + ", finalUrl=" + finalUrl + ", checkedAt=" + checkedAt + "}";
+    }
+}
@@ -0,0 +1,282 @@
+package org.sotorrent.util;
+
+import com.google.common.io.CountingInputStream;
+import org.sotorrent.util.collections.LongLongHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent store of link check results keyed by the URL fingerprint (see {@link URL#getFingerprint()}), such that
+ * repeated runs only need to re-check links whose status is stale (see
+ * {@link HttpUtils#checkLink(HttpRequestSender, LinkStatusStore, String, String, java.time.Duration)}).
+ * The file is an append-only log of records, the latest record of a fingerprint wins. The latest status of each
+ * fingerprint (including its strings) is kept in memory, thus the heap must be large enough for all distinct links
+ * in the store. If the log contains more than twice as many records as fingerprints, it is compacted by
+ * rewriting the latest records to a new file, which then replaces the log atomically.
+ * An incomplete last record (e.g., after a crash) is discarded. If writing to the log fails, the store is closed
+ * without writing further bytes, such that the log only ends with an incomplete record. Strings longer than 21845
+ * characters are stored as null. Thread-safe.
+ */
+public class LinkStatusStore implements Closeable {
+    private static final int MAGIC_NUMBER = 0x534f4c53;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int MIN_RECORDS_FOR_COMPACTION = 1024;
+    private static final int MAX_STRING_LENGTH = 65535 / 3; // maximum encoded length of writeUTF is 65535 bytes
+
+    private final Path file;
+    private final LongLongHashMap index = new LongLongHashMap(); // fingerprint to position in statuses
+    private final List<LinkStatus> statuses = new ArrayList<>();
+    private long recordCount = 0;
+    private OutputStream fileOut;
+    private DataOutputStream out; // null if closed
+
+    public LinkStatusStore(Path file) throws IOException {
+        this.file = file;
+        long validLength = load();
+        if (needsCompaction()) {
+            compact();
+        } else {
+            openForAppend(validLength);
+        }
+    }
+
+    /**
+     * @return length of the valid part of the file
+     */
+    private long load() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+             DataInputStream in = new DataInputStream(counter)) {
+            if (Files.size(file) < HEADER_LENGTH) {
+                return 0; // header incomplete, rewritten in openForAppend
+            }
+            if (in.readInt() != MAGIC_NUMBER || in.readInt() != VERSION) {
+                throw new IOException("Not a link status store: " + file);
+            }
+            long validLength = counter.getCount();
+            while (true) {
+                LinkStatus status;
+                try {
+                    status = readRecord(in);
+                } catch (EOFException e) {
+                    return validLength;
+                }
+                validLength = counter.getCount();
+                recordCount++;
+                putInMemory(status);
+            }
+        }
+    }
+
+    private void openForAppend(long validLength) throws IOException {
+        boolean empty = validLength == 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(validLength); // discard incomplete record
+        }
+        fileOut = Files.newOutputStream(file, StandardOpenOption.APPEND);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        if (empty) {
+            writeHeader(out);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC_NUMBER);
+        out.writeInt(VERSION);
+    }
+
+    private static LinkStatus readRecord(DataInputStream in) throws IOException {
+        long fingerprint = in.readLong();
+        int statusCode = in.readInt();
+        long checkedAt = in.readLong();
+        String finalUrl = readNullableString(in);
+        String eTag = readNullableString(in);
+        String lastModified = readNullableString(in);
+        return new LinkStatus(fingerprint, statusCode, finalUrl, checkedAt, eTag, lastModified);
+    }
+
+    private static void writeRecord(DataOutputStream out, LinkStatus status) throws IOException {
+        out.writeLong(status.getFingerprint());
+        out.writeInt(status.getStatusCode());
+        out.writeLong(status.getCheckedAt());
+        writeNullableString(out, status.getFinalUrl());
+        writeNullableString(out, status.getETag());
+        writeNullableString(out, status.getLastModified());
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        if (value != null && value.length() > MAX_STRING_LENGTH) {
+            value = null; // writeUTF would fail after the first fields of the record have been written
+        }
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private void putInMemory(LinkStatus status) {
+        long position = index.get(status.getFingerprint(), -1);
+        if (position < 0) {
+            index.put(status.getFingerprint(), statuses.size());
+            statuses.add(status);
+        } else {
+            statuses.set((int) position, status);
+        }
+    }
+
+    private boolean needsCompaction() {
+        return recordCount >= MIN_RECORDS_FOR_COMPACTION && recordCount > 2L * statuses.size();
+    }
+
+    /**
+     * Rewrite the log with only the latest record of each fingerprint.
+     */
+    public synchronized void compact() throws IOException {
+        if (out != null) {
+            // afterwards, closing the log cannot leave an incomplete record
+            flushOrClose();
+        }
+
+        // the log stays open for appending if the compacted file cannot be written
+        Path compactedFile = file.resolveSibling(file.getFileName() + ".compacted");
+        try (DataOutputStream compactedOut = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(compactedFile)))) {
+            writeHeader(compactedOut);
+            for (LinkStatus status : statuses) {
+                writeRecord(compactedOut, status);
+            }
+        }
+
+        try {
+            if (out != null) {
+                out.close(); // the log cannot be replaced while it is open on some platforms
+            }
+            Files.move(compactedFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            recordCount = statuses.size();
+        } finally {
+            // reopen the compacted log or, if it could not be moved, the previous log
+            openForAppend(Files.size(file));
+        }
+    }
+
+    public static long fingerprint(String url) {
+        URLParseResult result = URLView.tryParse(url);
+        if (result.isValid() && !result.getView().isEmpty()) {
+            return result.getView().getFingerprint();
+        }
+        // e.g., URLs with top-level domains that are not yet in the public suffix list
+        return new URLFingerprint().update(url).getValue();
+    }
+
+    /**
+     * @return latest status of the URL or null if the URL has not been checked yet
+     */
+    public LinkStatus get(String url) {
+        return get(fingerprint(url));
+    }
+
+    public synchronized LinkStatus get(long fingerprint) {
+        long position = index.get(fingerprint, -1);
+        return position < 0 ? null : statuses.get((int) position);
+    }
+
+    /**
+     * @param finalUrl URL after following redirects or null
+     * @param eTag value of the ETag header or null
+     * @param lastModified value of the Last-Modified header or null
+     */
+    public LinkStatus put(String url, int statusCode, String finalUrl, long checkedAt, String eTag, String lastModified)
+            throws IOException {
+        LinkStatus status = new LinkStatus(fingerprint(url), statusCode, finalUrl, checkedAt, eTag, lastModified);
+        put(status);
+        return status;
+    }
+
+    synchronized void put(LinkStatus status) throws IOException {
+        checkOpen();
+        try {
+            writeRecord(out, status);
+        } catch (IOException e) {
+            closeAfterFailure(e);
+            throw e;
+        }
+        recordCount++;
+        putInMemory(status);
+        if (needsCompaction()) {
+            compact();
+        }
+    }
+
+    public synchronized int size() {
+        return statuses.size();
+    }
+
+    /**
+     * Write buffered records to the file.
+     */
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        flushOrClose();
+    }
+
+    private void checkOpen() {
+        if (out == null) {
+            throw new IllegalStateException("Link status store is closed: " + file);
+        }
+    }
+
+    private void flushOrClose() throws IOException {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            closeAfterFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Close the file without flushing the buffer, because the buffered stream would write the partially written
+     * buffer again, which would result in an invalid record instead of an incomplete one.
+     */
+    private void closeAfterFailure(IOException e) {
+        out = null;
+        try {
+            fileOut.close();
+        } catch (IOException closeFailure) {
+            e.addSuppressed(closeFailure);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            try {
+                out.close();
+            } finally {
+                out = null; // the buffer must not be written again after a failure
+            }
+        }
+    }
+}
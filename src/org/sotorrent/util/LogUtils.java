@@ -4,6 +4,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
@@ -11,6 +14,10 @@ import java.util.logging.SimpleFormatter;
 
 public class LogUtils {
     private static Path defaultLogDir = Paths.get(System.getProperty("user.dir"), "logs");
+    private static final int ASYNC_BUFFER_CAPACITY = 8192;
+
+    // loggers are only weakly referenced by the LogManager, thus configured loggers are kept here
+    private static final Map<String, Logger> configuredLoggers = new HashMap<>();
 
     public static Logger getClassLogger(Class c) throws IOException {
         return getClassLogger(c, true, defaultLogDir);
@@ -25,6 +32,38 @@ public class LogUtils {
     }
 
     public static Logger getClassLogger(Class c, boolean consoleOutput, Path logFileDir) throws IOException {
+        return getClassLogger(c, consoleOutput, logFileDir, false);
+    }
+
+    /**
+     * Same as {@link #getClassLogger(Class)}, but log records are written to the log file on a background thread
+     * (see {@link AsyncLogHandler}). If the buffer is full, records are dropped.
+     */
+    public static Logger getAsyncClassLogger(Class c) throws IOException {
+        return getClassLogger(c, true, defaultLogDir, true);
+    }
+
+    /**
+     * Same as {@link #getAsyncClassLogger(Class)}, but wrapped in a {@link SampledLogger} that logs at most maxRepeats
+     * messages per template and budget messages in total per interval.
+     */
+    public static SampledLogger getSampledClassLogger(Class c, int maxRepeats, int budget, Duration interval)
+            throws IOException {
+        return new SampledLogger(getAsyncClassLogger(c), maxRepeats, budget, interval);
+    }
+
+    /**
+     * Configure the logger of a class to write to a log file named after the class. Each class is configured only
+     * once, later calls return the configured logger without adding further handlers (regardless of the arguments).
+     * @param asyncOutput if true, log records are written to the log file on a background thread
+     */
+    public static synchronized Logger getClassLogger(Class c, boolean consoleOutput, Path logFileDir,
+                                                     boolean asyncOutput) throws IOException {
+        Logger configuredLogger = configuredLoggers.get(c.getName());
+        if (configuredLogger != null) {
+            return configuredLogger;
+        }
+
         // ensure that log directory exists
         try {
             if (!Files.exists(logFileDir)) {
@@ -42,8 +81,13 @@ public class LogUtils {
         }
         Handler fileHandler = new FileHandler(logFile);
         fileHandler.setFormatter(new SimpleFormatter());
-        logger.addHandler(fileHandler);
+        if (asyncOutput) {
+            logger.addHandler(new AsyncLogHandler(fileHandler, ASYNC_BUFFER_CAPACITY, AsyncLogHandler.OverflowPolicy.DROP));
+        } else {
+            logger.addHandler(fileHandler);
+        }
 
+        configuredLoggers.put(c.getName(), logger);
         return logger;
     }
 }
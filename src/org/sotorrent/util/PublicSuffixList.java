@@ -0,0 +1,253 @@
+package org.sotorrent.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Case-insensitive trie of domain labels (stored in reverse order) that combines the IANA list of valid top-level
+ * domains with the ICANN section of the public suffix list (see https://publicsuffix.org/list/), which is read from
+ * the resource public_suffix_list.dat.
+ * The edges of the trie are stored in an open-addressing hash table, which can be queried directly with a region of
+ * a char sequence, thus determining top-level domain and root domain of a host does not allocate any objects.
+ */
+final class PublicSuffixList {
+    // ICANN section of the public suffix list, same format as https://publicsuffix.org/list/public_suffix_list.dat
+    private static final String PUBLIC_SUFFIX_LIST = "public_suffix_list.dat";
+    private static final String PRIVATE_DOMAINS_MARKER = "// ===BEGIN PRIVATE DOMAINS===";
+
+    private static final int ROOT = 0;
+
+    // node flags
+    private static final byte RULE = 1; // e.g., co.uk
+    private static final byte WILDCARD = 2; // e.g., *.ck (flag set on node ck)
+    private static final byte EXCEPTION = 4; // e.g., !www.ck
+    private static final byte TOP_LEVEL_DOMAIN = 8; // node is contained in the IANA list
+
+    // nodes, node 0 is the root node
+    private int nodeCount = 1;
+    private int[] parents = new int[1024];
+    private int[] labelOffsets = new int[1024];
+    private int[] labelLengths = new int[1024];
+    private byte[] flags = new byte[1024];
+    private char[] labels = new char[8192];
+    private int labelsLength = 0;
+
+    // open-addressing hash table mapping (parent node, label) to child node, 0 marks empty slots
+    private int[] slots = new int[2048];
+
+    /**
+     * @param topLevelDomains valid top-level domains in lower case
+     */
+    PublicSuffixList(Set<String> topLevelDomains) {
+        for (String topLevelDomain : topLevelDomains) {
+            addRule(topLevelDomain, TOP_LEVEL_DOMAIN);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Objects.requireNonNull(
+                Thread.currentThread().getContextClassLoader().getResourceAsStream(PUBLIC_SUFFIX_LIST)),
+                StandardCharsets.UTF_8))) {
+            addRules(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Reading " + PUBLIC_SUFFIX_LIST + " failed.", e);
+        }
+    }
+
+    private void addRules(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith(PRIVATE_DOMAINS_MARKER)) {
+                // private suffixes such as github.io would make user sites root domains of their own
+                return;
+            }
+            if (line.isEmpty() || line.startsWith("//")) {
+                continue;
+            }
+
+            byte flag = RULE;
+            if (line.startsWith("!")) {
+                flag = EXCEPTION;
+                line = line.substring(1);
+            } else if (line.startsWith("*.")) {
+                flag = WILDCARD;
+                line = line.substring(2);
+            }
+            try {
+                // hosts accepted by URLParser are ASCII-only, thus internationalized rules are converted to punycode
+                addRule(IDN.toASCII(line).toLowerCase(), flag);
+            } catch (IllegalArgumentException e) {
+                // ignore rules that cannot be converted
+            }
+        }
+    }
+
+    private void addRule(String rule, byte flag) {
+        int node = ROOT;
+        int labelEnd = rule.length();
+        while (labelEnd > 0) {
+            int labelStart = rule.lastIndexOf('.', labelEnd - 1) + 1;
+            int child = getChild(node, rule, labelStart, labelEnd);
+            if (child < 0) {
+                child = addNode(node, rule, labelStart, labelEnd);
+            }
+            node = child;
+            labelEnd = labelStart - 1;
+        }
+        flags[node] |= flag;
+    }
+
+    private int addNode(int parent, CharSequence s, int labelStart, int labelEnd) {
+        if (nodeCount == parents.length) {
+            int capacity = parents.length * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            labelOffsets = Arrays.copyOf(labelOffsets, capacity);
+            labelLengths = Arrays.copyOf(labelLengths, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        if (labelsLength + labelEnd - labelStart > labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelsLength + labelEnd - labelStart));
+        }
+
+        int node = nodeCount++;
+        parents[node] = parent;
+        labelOffsets[node] = labelsLength;
+        labelLengths[node] = labelEnd - labelStart;
+        for (int i = labelStart; i < labelEnd; i++) {
+            labels[labelsLength++] = toLowerCase(s.charAt(i));
+        }
+
+        // keep load factor below 0.5
+        if (nodeCount * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int i = 1; i < nodeCount; i++) {
+                insertSlot(i);
+            }
+        } else {
+            insertSlot(node);
+        }
+        return node;
+    }
+
+    private void insertSlot(int node) {
+        int mask = slots.length - 1;
+        int i = hash(parents[node], labels, labelOffsets[node], labelOffsets[node] + labelLengths[node]) & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = node;
+    }
+
+    private int getChild(int parent, CharSequence s, int labelStart, int labelEnd) {
+        int mask = slots.length - 1;
+        int i = hash(parent, s, labelStart, labelEnd) & mask;
+        int node;
+        while ((node = slots[i]) != 0) {
+            if (parents[node] == parent && labelEquals(node, s, labelStart, labelEnd)) {
+                return node;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean labelEquals(int node, CharSequence s, int labelStart, int labelEnd) {
+        if (labelLengths[node] != labelEnd - labelStart) {
+            return false;
+        }
+        int offset = labelOffsets[node];
+        for (int i = labelStart; i < labelEnd; i++) {
+            if (labels[offset++] != toLowerCase(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(int parent, CharSequence s, int labelStart, int labelEnd) {
+        int hash = parent;
+        for (int i = labelStart; i < labelEnd; i++) {
+            hash = 31 * hash + toLowerCase(s.charAt(i));
+        }
+        return mix(hash);
+    }
+
+    private static int hash(int parent, char[] s, int labelStart, int labelEnd) {
+        int hash = parent;
+        for (int i = labelStart; i < labelEnd; i++) {
+            hash = 31 * hash + s[i];
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        // finalization step of MurmurHash3
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static int labelStart(CharSequence s, int hostStart, int labelEnd) {
+        int i = labelEnd;
+        while (i > hostStart && s.charAt(i - 1) != '.') {
+            i--;
+        }
+        return i;
+    }
+
+    boolean isValidTopLevelDomain(CharSequence s, int start, int end) {
+        int node = getChild(ROOT, s, start, end);
+        return node >= 0 && (flags[node] & TOP_LEVEL_DOMAIN) != 0;
+    }
+
+    /**
+     * Determine the root domain (registrable domain, i.e., public suffix plus one label) of the host in [hostStart, hostEnd)
+     * in one walk over its labels from right to left.
+     * If the host itself is a public suffix, the complete host is considered to be the root domain.
+     * @return the start of the root domain or -1 if the top-level domain of the host is invalid
+     */
+    int rootDomainStart(CharSequence s, int hostStart, int hostEnd) {
+        int labelStart = labelStart(s, hostStart, hostEnd);
+        int node = getChild(ROOT, s, labelStart, hostEnd);
+        if (node < 0 || (flags[node] & TOP_LEVEL_DOMAIN) == 0) {
+            return -1;
+        }
+
+        int suffixStart = labelStart; // default rule *
+        while (labelStart > hostStart) {
+            int previousLabelStart = labelStart;
+            labelStart = labelStart(s, hostStart, previousLabelStart - 1);
+            int child = getChild(node, s, labelStart, previousLabelStart - 1);
+            if (child >= 0 && (flags[child] & EXCEPTION) != 0) {
+                // exception rules prevail, the public suffix is the exception rule without its leftmost label
+                suffixStart = previousLabelStart;
+                break;
+            }
+            if ((flags[node] & WILDCARD) != 0 || (child >= 0 && (flags[child] & RULE) != 0)) {
+                suffixStart = labelStart;
+            }
+            if (child < 0) {
+                break;
+            }
+            node = child;
+        }
+
+        if (suffixStart == hostStart) {
+            return hostStart;
+        }
+        return labelStart(s, hostStart, suffixStart - 1);
+    }
+}
@@ -0,0 +1,175 @@
+package org.sotorrent.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Follows redirect chains asynchronously, up to maxRedirects redirects, and detects redirect cycles.
+ * Each hop (source URL, status code, and redirect target) is memoized in a bounded cache shared by all chains,
+ * which evicts the least recently used hops, thus chains that pass through known hops (e.g., URL shorteners or http to https redirects) are resolved without
+ * sending the same request again. Concurrent chains that reach the same URL share one request.
+ * Hops with transient results (429, 5xx, or failed requests) are not memoized.
+ * The sender must not follow redirects itself.
+ */
+public class RedirectResolver {
+    private final HttpRequestSender sender;
+    private final String requestMethod;
+    private final int maxRedirects;
+    private final Cache<String, CompletableFuture<Hop>> cache;
+    private final ConcurrentMap<String, CompletableFuture<Hop>> hops;
+
+    /**
+     * @param requestMethod e.g., HEAD or GET
+     * @param maxMemoizedHops maximum number of memoized hops, beyond which the least recently used hops are evicted
+     */
+    public RedirectResolver(HttpRequestSender sender, String requestMethod, int maxRedirects, int maxMemoizedHops) {
+        this.sender = sender;
+        this.requestMethod = requestMethod;
+        this.maxRedirects = maxRedirects;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxMemoizedHops)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .build();
+        this.hops = cache.asMap();
+    }
+
+    public CompletableFuture<RedirectChain> resolve(String url) {
+        List<String> urls = new ArrayList<>();
+        urls.add(url);
+        Set<String> visited = new HashSet<>(urls);
+        return follow(urls, visited);
+    }
+
+    private CompletableFuture<RedirectChain> follow(List<String> urls, Set<String> visited) {
+        return getHop(urls.get(urls.size() - 1)).thenCompose(hop -> {
+            if (hop.target == null) {
+                return CompletableFuture.completedFuture(new RedirectChain(RedirectChain.Status.RESOLVED, urls, hop.statusCode));
+            }
+            if (urls.size() > maxRedirects) {
+                return CompletableFuture.completedFuture(new RedirectChain(RedirectChain.Status.TOO_MANY_REDIRECTS, urls, hop.statusCode));
+            }
+            urls.add(hop.target);
+            if (!visited.add(hop.target)) {
+                return CompletableFuture.completedFuture(new RedirectChain(RedirectChain.Status.CYCLE, urls, hop.statusCode));
+            }
+            return follow(urls, visited);
+        });
+    }
+
+    private CompletableFuture<Hop> getHop(String url) {
+        CompletableFuture<Hop> hop = new CompletableFuture<>();
+        CompletableFuture<Hop> knownHop = hops.putIfAbsent(url, hop);
+        if (knownHop != null) {
+            return knownHop;
+        }
+
+        // not sent in putIfAbsent, because the request may complete (and remove the hop) synchronously
+        sender.send(url, requestMethod).whenComplete((response, e) -> {
+            if (e != null) {
+                hops.remove(url, hop);
+                hop.completeExceptionally(e);
+                return;
+            }
+            if (HttpUtils.transientFailure(response.statusCode())) {
+                hops.remove(url, hop);
+            }
+            try {
+                hop.complete(new Hop(response.statusCode(), getTarget(url, response)));
+            } catch (IllegalArgumentException invalidLocation) {
+                hops.remove(url, hop);
+                hop.completeExceptionally(invalidLocation);
+            }
+        });
+        return hop;
+    }
+
+    private static String getTarget(String url, HttpResponse<?> response) {
+        if (!HttpUtils.redirect(response)) {
+            return null;
+        }
+        // the location may be relative
+        return response.headers().firstValue("Location")
+                .map(location -> URI.create(url).resolve(location.trim()).toString())
+                .orElse(null);
+    }
+
+    /**
+     * @return number of memoized hops (including hops that are currently being requested)
+     */
+    public int getMemoizedHopCount() {
+        return (int) cache.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private static class Hop {
+        private final int statusCode;
+        private final String target; // null if the response is not a redirect
+
+        private Hop(int statusCode, String target) {
+            this.statusCode = statusCode;
+            this.target = target;
+        }
+    }
+
+    public static class RedirectChain {
+        public enum Status {
+            RESOLVED, TOO_MANY_REDIRECTS, CYCLE
+        }
+
+        private final Status status;
+        private final List<String> urls;
+        private final int statusCode;
+
+        private RedirectChain(Status status, List<String> urls, int statusCode) {
+            this.status = status;
+            this.urls = Collections.unmodifiableList(urls);
+            this.statusCode = statusCode;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isResolved() {
+            return status == Status.RESOLVED;
+        }
+
+        /**
+         * @return requested URL followed by the redirect targets
+         */
+        public List<String> getUrls() {
+            return urls;
+        }
+
+        /**
+         * @return last URL of the chain, the final target if the chain was resolved
+         */
+        public String getTargetUrl() {
+            return urls.get(urls.size() - 1);
+        }
+
+        public int getRedirectCount() {
+            return urls.size() - 1;
+        }
+
+        /**
+         * @return status code of the last response, which is a redirect if the chain was not resolved
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+}
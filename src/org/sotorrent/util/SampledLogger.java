@@ -0,0 +1,114 @@
+package org.sotorrent.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rate-limited wrapper around a logger for messages on hot paths. Messages are created lazily by suppliers, which
+ * are only called if the message is actually logged. Within each interval, at most maxRepeats messages per template
+ * (a constant string identifying the kind of message) and at most budget messages in total are logged. The number of
+ * suppressed messages per template is logged as a summary at the beginning of the next interval (or when calling
+ * {@link #logSummaries()}).
+ */
+public class SampledLogger {
+    private final Logger logger;
+    private final int maxRepeats;
+    private final int budget;
+    private final long intervalNanos;
+
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private final AtomicInteger loggedCount = new AtomicInteger(0);
+    private volatile long intervalStart = System.nanoTime();
+
+    /**
+     * @param maxRepeats maximum number of messages per template and interval
+     * @param budget maximum number of messages per interval (excluding summaries)
+     */
+    public SampledLogger(Logger logger, int maxRepeats, int budget, Duration interval) {
+        this.logger = logger;
+        this.maxRepeats = maxRepeats;
+        this.budget = budget;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    public void info(String template, Supplier<String> message) {
+        log(Level.INFO, template, message);
+    }
+
+    public void warning(String template, Supplier<String> message) {
+        log(Level.WARNING, template, message);
+    }
+
+    public void log(Level level, String template, Supplier<String> message) {
+        if (!logger.isLoggable(level)) {
+            return;
+        }
+        startNextIntervalIfExpired();
+
+        Template state = templates.computeIfAbsent(template, t -> new Template());
+        state.level = level;
+        if (state.repeats.incrementAndGet() > maxRepeats || loggedCount.incrementAndGet() > budget) {
+            state.suppressed.incrementAndGet();
+            return;
+        }
+        logWithCaller(level, message);
+    }
+
+    private void logWithCaller(Level level, Supplier<String> message) {
+        // the logger would infer this class as the source of the record
+        Optional<StackWalker.StackFrame> caller = StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !frame.getClassName().equals(SampledLogger.class.getName()))
+                .findFirst());
+        if (caller.isPresent()) {
+            logger.logp(level, caller.get().getClassName(), caller.get().getMethodName(), message);
+        } else {
+            logger.log(level, message);
+        }
+    }
+
+    private void startNextIntervalIfExpired() {
+        if (System.nanoTime() - intervalStart < intervalNanos) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - intervalStart < intervalNanos) {
+                return; // started by another thread
+            }
+            intervalStart = now;
+            loggedCount.set(0);
+            logSummaries();
+        }
+    }
+
+    /**
+     * Log the number of messages suppressed since the last summary, e.g., at the end of a run.
+     */
+    public void logSummaries() {
+        for (Map.Entry<String, Template> entry : templates.entrySet()) {
+            Template state = entry.getValue();
+            state.repeats.set(0);
+            long suppressed = state.suppressed.getAndSet(0);
+            if (suppressed > 0) {
+                logWithCaller(state.level, () -> suppressed + " suppressed: " + entry.getKey());
+            }
+        }
+    }
+
+    private static class Template {
+        private final AtomicInteger repeats = new AtomicInteger(0);
+        private final AtomicLong suppressed = new AtomicLong(0);
+        private volatile Level level;
+    }
+}
@@ -0,0 +1,343 @@
+package org.sotorrent.util;
+
+import java.util.Objects;
+
+/**
+ * Post (and comment) referenced by a Stack Overflow link, e.g. for building a post-to-post link graph.
+ * classify(...) determines the referenced post in a single pass over the input without creating URL objects.
+ */
+public class StackOverflowLink {
+    public enum Type {
+        QUESTION, ANSWER, COMMENT
+    }
+
+    private final Type type;
+    private final long postId;
+    private final long questionId;
+    private final long commentId;
+    // digits as they occur in the link (e.g., with leading zeros), used for the normalized link
+    private final String postIdDigits;
+    private final String questionIdDigits;
+    private final String commentIdDigits;
+
+    private StackOverflowLink(Type type, String postIdDigits, String questionIdDigits, String commentIdDigits) {
+        this.type = type;
+        this.postId = parseId(postIdDigits);
+        this.questionId = parseId(questionIdDigits);
+        this.commentId = parseId(commentIdDigits);
+        this.postIdDigits = postIdDigits;
+        this.questionIdDigits = questionIdDigits;
+        this.commentIdDigits = commentIdDigits;
+    }
+
+    private static long parseId(String digits) {
+        if (digits == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return -1; // more than 18 digits
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return id of the linked question or answer, for comments the id of the post the comment belongs to
+     * (ids that do not fit into a long are -1, but are kept in the normalized link)
+     */
+    public long getPostId() {
+        return postId;
+    }
+
+    /**
+     * @return id of the question in the path of a comment link, -1 for other links
+     */
+    public long getQuestionId() {
+        return questionId;
+    }
+
+    /**
+     * @return id of the linked comment, -1 for other links
+     */
+    public long getCommentId() {
+        return commentId;
+    }
+
+    public String getNormalizedLink() {
+        switch (type) {
+            case QUESTION:
+                return "https://stackoverflow.com/q/" + postIdDigits;
+            case ANSWER:
+                return "https://stackoverflow.com/a/" + postIdDigits;
+            default:
+                return "https://stackoverflow.com/questions/" + questionIdDigits + "#comment" + commentIdDigits + "_" + postIdDigits;
+        }
+    }
+
+    /**
+     * @return same fingerprint as {@link URL#getFingerprint()} for the normalized link, computed without creating strings
+     */
+    public long getFingerprint() {
+        URLFingerprint fingerprint = new URLFingerprint().update("https://stackoverflow.com/");
+        switch (type) {
+            case QUESTION:
+                fingerprint.update("q/").update(postIdDigits);
+                break;
+            case ANSWER:
+                fingerprint.update("a/").update(postIdDigits);
+                break;
+            default:
+                fingerprint.update("questions/").update(questionIdDigits)
+                        .update("#comment").update(commentIdDigits).update('_').update(postIdDigits);
+        }
+        return fingerprint.getValue();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StackOverflowLink that = (StackOverflowLink) o;
+        return type == that.type && postIdDigits.equals(that.postIdDigits)
+                && Objects.equals(questionIdDigits, that.questionIdDigits)
+                && Objects.equals(commentIdDigits, that.commentIdDigits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, postIdDigits, questionIdDigits, commentIdDigits);
+    }
+
+    @Override
+    public String toString() {
+        return getNormalizedLink();
+    }
+
+    // precedence of the link variants, same order as the former regex cascade in URL.getNormalizedStackOverflowLink
+    private static final int NO_MATCH = 0;
+    private static final int LONG_QUESTION = 1; // stackoverflow.com/questions/<post>
+    private static final int SHORT_QUESTION = 2; // stackoverflow.com/q/<post>
+    private static final int LONG_ANSWER = 3; // stackoverflow.com/questions/<question>/<slug>#<post>
+    private static final int SHORT_ANSWER = 4; // stackoverflow.com/a/<post>
+    private static final int COMMENT = 5; // stackoverflow.com/questions/<question>/<slug>[/<post>][?<query>]#comment<comment>_<post>
+
+    private static final String host = "stackoverflow.com/";
+
+    /**
+     * Classify all Stack Overflow links in the input in one pass.
+     * If the input contains several links, the result is the same as the one of the former regex cascade:
+     * the first comment link, otherwise the first short answer link, long answer link, short question link,
+     * or long question link (in this order).
+     * @param s input containing Stack Overflow links, usually a single URL
+     * @return the referenced post or null if there is no link to a post
+     */
+    public static StackOverflowLink classify(CharSequence s) {
+        // candidate values for the best match so far
+        int bestMatch = NO_MATCH;
+        String postId = null;
+        String questionId = null;
+        String commentId = null;
+
+        int[] numbers = new int[6]; // start and end of the digits of up to three numbers
+        int end = s.length();
+        for (int start = 0; start < end && bestMatch < COMMENT; start++) {
+            int i = scanPrefix(s, start, end);
+            if (i < 0) {
+                continue;
+            }
+
+            // the variants are mutually exclusive at the same position
+            int match;
+            if (scanShortLink(s, i, end, 'a', numbers) >= 0) {
+                match = SHORT_ANSWER;
+            } else if (scanShortLink(s, i, end, 'q', numbers) >= 0) {
+                match = SHORT_QUESTION;
+            } else {
+                match = scanQuestionsLink(s, i, end, numbers);
+            }
+
+            // only a better variant replaces an earlier match
+            if (match > bestMatch) {
+                bestMatch = match;
+                questionId = commentId = null;
+                switch (match) {
+                    case LONG_ANSWER:
+                        postId = digits(s, numbers, 1);
+                        break;
+                    case COMMENT:
+                        questionId = digits(s, numbers, 0);
+                        commentId = digits(s, numbers, 1);
+                        postId = digits(s, numbers, 2);
+                        break;
+                    default:
+                        postId = digits(s, numbers, 0);
+                }
+            }
+        }
+
+        switch (bestMatch) {
+            case LONG_QUESTION:
+            case SHORT_QUESTION:
+                return new StackOverflowLink(Type.QUESTION, postId, null, null);
+            case LONG_ANSWER:
+            case SHORT_ANSWER:
+                return new StackOverflowLink(Type.ANSWER, postId, null, null);
+            case COMMENT:
+                return new StackOverflowLink(Type.COMMENT, postId, questionId, commentId);
+            default:
+                return null;
+        }
+    }
+
+    private static String digits(CharSequence s, int[] numbers, int index) {
+        return s.subSequence(numbers[2 * index], numbers[2 * index + 1]).toString();
+    }
+
+    private static boolean equalsIgnoreCase(char c, char lowerCaseAsciiLetter) {
+        return (c | 0x20) == lowerCaseAsciiLetter;
+    }
+
+    private static boolean regionMatches(CharSequence s, int i, int end, String lowerCase) {
+        if (end - i < lowerCase.length()) {
+            return false;
+        }
+        for (int j = 0; j < lowerCase.length(); j++) {
+            char expected = lowerCase.charAt(j);
+            char c = s.charAt(i + j);
+            if (expected >= 'a' && expected <= 'z' ? !equalsIgnoreCase(c, expected) : c != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(char c) {
+        // \s in Java regular expressions
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Scan https?://(?:www.)?stackoverflow\.com/ (case-insensitive).
+     * @return position after the prefix or -1 if there is no match at this position
+     */
+    private static int scanPrefix(CharSequence s, int i, int end) {
+        if (!regionMatches(s, i, end, "http")) {
+            return -1;
+        }
+        i += 4;
+        if (i < end && equalsIgnoreCase(s.charAt(i), 's')) {
+            i++;
+        }
+        if (!regionMatches(s, i, end, "://")) {
+            return -1;
+        }
+        i += 3;
+        // the dot in the optional (?:www.) matches any character except line terminators
+        if (regionMatches(s, i, end, "www") && end - i > 3 && !isLineTerminator(s.charAt(i + 3))
+                && regionMatches(s, i + 4, end, host)) {
+            return i + 4 + host.length();
+        }
+        if (regionMatches(s, i, end, host)) {
+            return i + host.length();
+        }
+        return -1;
+    }
+
+    /**
+     * Scan \d+ and store the start and end of the digits in numbers (the digits are only converted to a string for
+     * the best match).
+     * @return position after the digits or -1 if there are no digits
+     */
+    private static int scanNumber(CharSequence s, int i, int end, int[] numbers, int index) {
+        int start = i;
+        while (i < end && isDigit(s.charAt(i))) {
+            i++;
+        }
+        if (i == start) {
+            return -1;
+        }
+        numbers[2 * index] = start;
+        numbers[2 * index + 1] = i;
+        return i;
+    }
+
+    private static int scanShortLink(CharSequence s, int i, int end, char type, int[] numbers) {
+        // a/\d+ or q/\d+
+        if (i + 1 >= end || !equalsIgnoreCase(s.charAt(i), type) || s.charAt(i + 1) != '/') {
+            return -1;
+        }
+        return scanNumber(s, i + 2, end, numbers, 0);
+    }
+
+    /**
+     * Scan the variants starting with questions/\d+ and return the best matching one.
+     * numbers[0] is the question id, numbers[1] the answer or comment id, and numbers[2] the post id of a comment.
+     */
+    private static int scanQuestionsLink(CharSequence s, int i, int end, int[] numbers) {
+        if (!regionMatches(s, i, end, "questions/")) {
+            return NO_MATCH;
+        }
+        i = scanNumber(s, i + "questions/".length(), end, numbers, 0);
+        if (i < 0) {
+            return NO_MATCH;
+        }
+        if (i >= end || s.charAt(i) != '/') {
+            return LONG_QUESTION;
+        }
+        int slugStart = ++i;
+
+        // comment: [^\s/#]+(?:/\d+)?(?:\?[^\s/#]+)?#comment\d+_\d+
+        int j = slugStart;
+        while (j < end && !isWhitespace(s.charAt(j)) && s.charAt(j) != '/' && s.charAt(j) != '#') {
+            j++;
+        }
+        if (j > slugStart) {
+            int k = j;
+            if (k < end && s.charAt(k) == '/') {
+                k = scanNumber(s, k + 1, end, numbers, 1);
+                if (k >= 0 && k < end && s.charAt(k) == '?') {
+                    int queryStart = ++k;
+                    while (k < end && !isWhitespace(s.charAt(k)) && s.charAt(k) != '/' && s.charAt(k) != '#') {
+                        k++;
+                    }
+                    if (k == queryStart) {
+                        k = -1;
+                    }
+                }
+            }
+            if (k >= 0 && regionMatches(s, k, end, "#comment")) {
+                k = scanNumber(s, k + "#comment".length(), end, numbers, 1);
+                if (k >= 0 && k < end && s.charAt(k) == '_' && scanNumber(s, k + 1, end, numbers, 2) >= 0) {
+                    return COMMENT;
+                }
+            }
+        }
+
+        // long answer: [^\s#]+#\d+
+        j = slugStart;
+        while (j < end && !isWhitespace(s.charAt(j)) && s.charAt(j) != '#') {
+            j++;
+        }
+        if (j > slugStart && j < end && s.charAt(j) == '#' && scanNumber(s, j + 1, end, numbers, 1) >= 0) {
+            return LONG_ANSWER;
+        }
+
+        return LONG_QUESTION;
+    }
+}
@@ -1,28 +1,26 @@
 package org.sotorrent.util;
 
-import com.google.common.base.CharMatcher;
-
 import java.io.*;
 import java.net.MalformedURLException;
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
-import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class URL  {
-    private static Logger logger = null;
+    private static SampledLogger logger = null;
     static {
-        // configure logger
+        // configure logger, failed normalizations are frequent in post dumps
         try {
-            logger = LogUtils.getClassLogger(URL.class);
+            logger = LogUtils.getSampledClassLogger(URL.class, 10, 100, Duration.ofMinutes(1));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private java.net.URL urlObject;
     private String urlString;
     private String protocol;
     private String completeDomain;
@@ -36,40 +34,28 @@ public class URL  {
     // see also https://en.wikipedia.org/wiki/Uniform_Resource_Identifier
     private static final String protocolRegex = "https?|ftp";
     private static final String completeDomainRegex = "[\\w\\-]+(?:(?:\\.[\\w\\-]+)+)";
-    private static final String rootDomainRegex = "([\\w\\-]+\\.([\\w\\-]+))(?:[^\\w\\-.].*)?$";
     private static final String allowedCharacters = "\\w\\-.,@^=%&:/~+";
     private static final String bracketExpression = "\\([" + allowedCharacters + "]+\\)";
     private static final String pathRegex = "/(?:[" + allowedCharacters + "]+)?(?:" + bracketExpression + ")?";
     private static final String queryRegex = "\\?[" + allowedCharacters + "\\?]*";
     private static final String fragmentIdentifierRegex = "#[" + allowedCharacters + "?#!]+(?:" + bracketExpression + ")?";
-    private static final Pattern completeDomainPattern;
-    private static final Pattern rootDomainPattern;
     private static final String urlRegex; // the regex string is needed for the Link classes in project so-posthistory-extractor
     private static final Pattern urlPattern;
 
     // regular expressions to match and normalize Stack Overflow links (use redundant escaping to be compatible with SQL)
     private static final Pattern stackOverflowLinkPattern = Pattern.compile("(https?://(?:www.)?stackoverflow\\.com/(?:[a-zA-Z0-9\\-_#/\\\\?=+&%;]*[a-zA-Z0-9/])?)", Pattern.CASE_INSENSITIVE);
     private static final Pattern stackOverflowSearchLinkPattern = Pattern.compile("(https?://(?:www.)?stackoverflow\\.com/search[^:]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern stackOverflowShortAnswerLinkPattern = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/a/([\\d]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern stackOverflowLongAnswerLinkPattern = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/questions/[\\d]+/[^\\s#]+#([\\d]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern stackOverflowShortQuestionLinkPattern = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/q/([\\d]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern stackOverflowLongQuestionLinkPattern = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/questions/([\\d]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern stackOverflowCommentLinkPattern = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/(questions/\\d+)/[^\\s/#]+(?:/\\d+)?(?:\\?[^\\s/#]+)?(#comment\\d+_\\d+)", Pattern.CASE_INSENSITIVE);
 
     // list downloaded from http://data.iana.org/TLD/tlds-alpha-by-domain.txt
     private static final String topLevelDomainList = "tld-list.txt";
     private static Set<String> validTopLevelDomains = new HashSet<>();
+    // trie combining the list above with the public suffix list, used to determine root domains
+    private static final PublicSuffixList publicSuffixList;
 
     static {
         urlRegex = encloseInNonCapturingGroup(protocolRegex) + "://" + completeDomainRegex + makeOptional(encloseInNonCapturingGroup(pathRegex)) + makeOptional(encloseInNonCapturingGroup(queryRegex)) + makeOptional(encloseInNonCapturingGroup(fragmentIdentifierRegex));
         urlPattern = Pattern.compile(urlRegex, Pattern.CASE_INSENSITIVE);
 
-        // pattern to extract the complate domain from a domain string
-        completeDomainPattern = Pattern.compile(encloseInCapturingGroup(completeDomainRegex) + "(?:[^\\w\\-.].*)?$");
-
-        // pattern to extract the root domain from a domain string
-        rootDomainPattern = Pattern.compile(rootDomainRegex, Pattern.CASE_INSENSITIVE);
-
         // read list with valid URIs
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(
                 Objects.requireNonNull(Thread.currentThread().getContextClassLoader().getResourceAsStream(topLevelDomainList))))) {
@@ -84,6 +70,7 @@ public class URL  {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        publicSuffixList = new PublicSuffixList(validTopLevelDomains);
     }
 
     public static String getUrlRegex() {
@@ -106,151 +93,52 @@ public class URL  {
         return "(?:" + regex + ")";
     }
 
-    private static String encloseInCapturingGroup(String regex) {
-        return "(" + regex + ")";
-    }
-
     public URL(String url) throws MalformedURLException {
-        this.urlString = cleanUrl(url);
-
-        if (isEmpty()) {
-            return;
-        }
-        if (!isValid()) {
-            throw new MalformedURLException("Malformed URL: " + urlString);
-        }
-
-        this.urlObject = new java.net.URL(this.urlString);
-        extractURLComponents();
-    }
-
-    private String cleanUrl(String url) {
-        if (url == null) {
-            return null;
-        }
-
-        url = url.trim();
-
-        int length = 0;
-        while (length != url.length()) {
-            length = url.length();
-            url = cleanPunctuation(url);
-            url = cleanEscapedCharacters(url);
+        if (url != null) {
+            URLParseResult result = URLView.tryParse(url);
+            if (!result.isValid()) {
+                throw new MalformedURLException(result.getErrorMessage());
+            }
+            initialize(result.getView());
         }
-
-        return url;
     }
 
-    private String cleanPunctuation(String url) {
-        while (url.endsWith(".") || url.endsWith(",") || url.endsWith(":") || url.endsWith(";") || url.endsWith("%") || url.endsWith("#")) {
-            url = url.substring(0, url.length()-1);
-        }
-        return url;
+    URL(URLView view) {
+        initialize(view);
     }
 
-    private String cleanEscapedCharacters(String url) {
-        while (url.endsWith("&#xA") || url.endsWith("&#xD")) {
-            url = url.substring(0, url.length()-4);
-        }
-        return url;
+    /**
+     * Non-throwing alternative to the constructor, which is cheaper for inputs that are often invalid.
+     * @param url the URL string to parse (null is treated like an empty string)
+     * @return the parse result, use getUrl() to get the URL object
+     */
+    public static URLParseResult tryParse(String url) {
+        return URLView.tryParse(url == null ? "" : url);
     }
 
-    private boolean isValid() {
-        Matcher urlMatcher = URL.urlPattern.matcher(this.urlString);
-        return urlMatcher.matches();
+    private void initialize(URLView view) {
+        this.urlString = view.getUrlString();
+        this.protocol = view.getProtocol();
+        this.completeDomain = view.getCompleteDomain();
+        this.rootDomain = view.getRootDomain();
+        this.topLevelDomain = view.getTopLevelDomain();
+        this.path = view.getPath();
+        this.query = view.getQuery();
+        this.fragmentIdentifier = view.getFragmentIdentifier();
     }
 
     public boolean isEmpty() {
         return this.urlString == null || this.urlString.length() == 0;
     }
 
-    private void extractURLComponents() throws MalformedURLException {
-        if (this.urlObject == null) {
-            return;
-        }
-
-        this.protocol = this.urlObject.getProtocol();
-        this.completeDomain = getCompleteDomain(this.urlObject);
-        this.rootDomain = getRootDomain(this.urlObject);
-        this.topLevelDomain = getTopLevelDomain(urlObject);
-
-        if (!isValidTopLevelDomain(topLevelDomain)) {
-            throw new MalformedURLException("Invalid Top Level Domain: " + topLevelDomain);
-        }
-
-        this.path = getPath(this.urlObject);
-        this.query = getQuery(this.urlObject);
-        this.fragmentIdentifier = getFragmentIdentifier(this.urlObject);
-    }
-
-    private boolean isValidTopLevelDomain(String topLevelDomain) {
-        return validTopLevelDomains.contains(topLevelDomain.toLowerCase());
-    }
-
-    private String getCompleteDomain(java.net.URL url) {
-        Matcher completeDomainMatcher = URL.completeDomainPattern.matcher(url.getHost());
-        if (!completeDomainMatcher.find()) {
-            throw new IllegalArgumentException("Extraction of complete domain failed for URL: " + url);
-        }
-        return completeDomainMatcher.group(1);
-    }
-
-    private String getRootDomain(java.net.URL url) {
-        Matcher rootDomainMatcher = URL.rootDomainPattern.matcher(url.getHost());
-        if (!rootDomainMatcher.find()) {
-            throw new IllegalArgumentException("Extraction of root domain failed for URL: " + url);
-        }
-        return rootDomainMatcher.group(1);
-    }
-
-    private String getTopLevelDomain(java.net.URL url) {
-        Matcher rootDomainMatcher = URL.rootDomainPattern.matcher(url.getHost());
-        if (!rootDomainMatcher.find()) {
-            throw new IllegalArgumentException("Extraction of top-level domain failed for URL: " + url);
-        }
-        return rootDomainMatcher.group(2);
-    }
-
-    private String getPath(java.net.URL url) {
-        String path = url.getPath();
-
-        // remove leading slash
-        if (path.startsWith("/")) {
-            path = path.substring(1);
-        }
-
-        // remove trailing slash
-        if (path.endsWith("/")) {
-            path = path.substring(0, path.length()-1);
-        }
-
-        // return null if path only contains whitespaces
-        if (path.trim().length() == 0) {
-            return null;
-        }
-
-        // return null if path only contains punctuation (extracted from Markdown)
-        if (path.equals(".") || path.equals(",") || path.equals(":")) {
-            return null;
-        }
-
-        return path;
-    }
-
-    private String getQuery(java.net.URL url) {
-        String query = url.getQuery();
-        if (query != null && query.trim().length() == 0) {
-            query = null;
-        }
-        return query;
-    }
-
-    private String getFragmentIdentifier(java.net.URL url) {
-        String fragmentIdentifier = url.getRef();
-        if (fragmentIdentifier != null && fragmentIdentifier.trim().length() == 0) {
-            fragmentIdentifier = null;
-        }
-        return fragmentIdentifier;
+    /**
+     * Validate the top-level domain of a parsed URL and determine its root domain (e.g., bbc.co.uk for www.bbc.co.uk).
+     * @return false if the top-level domain is invalid
+     */
+    static boolean resolveRootDomain(CharSequence source, int[] offsets) {
+        int rootDomainStart = publicSuffixList.rootDomainStart(source, offsets[URLParser.HOST_START], offsets[URLParser.HOST_END]);
+        offsets[URLParser.ROOT_DOMAIN_START] = rootDomainStart;
+        return rootDomainStart >= 0;
     }
 
     public String getUrlString() {
@@ -269,6 +157,10 @@ public class URL  {
         return rootDomain;
     }
 
+    public String getTopLevelDomain() {
+        return topLevelDomain;
+    }
+
     public String getPath() {
         return path;
     }
@@ -281,6 +173,18 @@ public class URL  {
         return fragmentIdentifier;
     }
 
+    /**
+     * @return stable 64-bit fingerprint of the URL string with case-insensitive protocol and host, e.g. for deduplicating
+     * normalized links in a LongHashSet
+     */
+    public long getFingerprint() {
+        if (isEmpty()) {
+            return URLFingerprint.of("", 0, 0, 0);
+        }
+        int hostEnd = protocol.length() + "://".length() + completeDomain.length();
+        return URLFingerprint.of(urlString, 0, hostEnd, urlString.length());
+    }
+
     /**
      * Heuristic to test if a match is inside a Markdown inline code.
      * (uneven number of backtick characters before and after match)
@@ -289,74 +193,131 @@ public class URL  {
      * @return true if match is located inside Markdown inline code
      */
     public static boolean inInlineCode(Matcher matcher, String content) {
-        int backticksBefore =  CharMatcher.is('`').countIn(content.substring(0, matcher.start()));
-        int backticksAfter =  CharMatcher.is('`').countIn(content.substring(matcher.end()));
+        int backticksBefore = countBackticks(content, 0, matcher.start());
+        int backticksAfter = countBackticks(content, matcher.end(), content.length());
+        return inInlineCode(backticksBefore, backticksAfter);
+    }
+
+    static boolean inInlineCode(int backticksBefore, int backticksAfter) {
         return backticksBefore > 0 && backticksAfter > 0 && backticksBefore%2 != 0 && backticksAfter%2 != 0;
     }
 
-    public static URL stackOverflowLinkFromSourceCodeLine(String line) {
-        Matcher stackOverflowMatcher = stackOverflowLinkPattern.matcher(line);
-        String url = "";
-        if (stackOverflowMatcher.find()) {
-            try {
-                url = stackOverflowMatcher.group(1);
-                return new URL(url);
-            } catch (MalformedURLException eOutter) {
-                // Java's URL class doesn't accept SO search URLs like https://stackoverflow.com/search?q=user:9841338+[python]
-                // This workaround ignores everything after the problematic colon character
-                Matcher stackOverflowSearchMatcher = stackOverflowSearchLinkPattern.matcher(url);
-                if (stackOverflowSearchMatcher.find()) {
-                    try {
-                        return new URL(stackOverflowSearchMatcher.group(1));
-                    } catch (MalformedURLException eInner) {
-                        logger.warning(eInner.toString());
-                    }
-                } else {
-                    logger.warning(eOutter.toString());
-                }
-                return null;
+    static int countBackticks(CharSequence content, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (content.charAt(i) == '`') {
+                count++;
             }
         }
-        logger.info("No Stack Overflow link found in: " + line);
-        return null;
+        return count;
     }
 
-    public static URL getNormalizedStackOverflowLink(URL url) {
-        return getNormalizedStackOverflowLink(url.getUrlString());
+    /**
+     * Extract all valid URLs from a post body in a single pass, ignoring URLs in Markdown inline code.
+     * See URLView.extractAll(...), which avoids creating the component strings.
+     * @param content the content to extract the URLs from
+     * @return lazily populated stream of URLs in the order of their occurrence
+     */
+    public static Stream<URL> extractAll(CharSequence content) {
+        return extractAll(content, true);
     }
 
-    public static URL getNormalizedStackOverflowLink(String url) {
-        try {
-            Matcher commentMatcher = stackOverflowCommentLinkPattern.matcher(url);
-            if (commentMatcher.find()) {
-                return new URL("https://stackoverflow.com/" + commentMatcher.group(1)
-                        + commentMatcher.group(2).toLowerCase());
+    public static Stream<URL> extractAll(CharSequence content, boolean ignoreInlineCode) {
+        return URLView.extractAll(content, ignoreInlineCode).map(URL::new);
+    }
+
+    /**
+     * Literal prefilter for stackOverflowLinkPattern: case-insensitive search for "stackoverflow" preceded by "http://",
+     * "https://", "http://www.", or "https://www.". It neither runs a regex nor allocates objects.
+     * @return false if the line cannot contain a match of stackOverflowLinkPattern
+     */
+    static boolean mayContainStackOverflowLink(String line) {
+        int i = 0;
+        while ((i = indexOfIgnoreCase(line, "stackoverflow", i)) >= 0) {
+            // offsets of "http" relative to "stackoverflow": http://, https://, http://www., https://www.
+            if (regionMatchesHttp(line, i - 7) || regionMatchesHttp(line, i - 8)
+                    || regionMatchesHttp(line, i - 11) || regionMatchesHttp(line, i - 12)) {
+                return true;
             }
+            i++;
+        }
+        return false;
+    }
 
-            Matcher shortAnswerMatcher = stackOverflowShortAnswerLinkPattern.matcher(url);
-            if (shortAnswerMatcher.find()) {
-                return new URL("https://stackoverflow.com/a/" + shortAnswerMatcher.group(1));
+    private static boolean regionMatchesHttp(String line, int i) {
+        return i >= 0 && line.regionMatches(true, i, "http", 0, 4);
+    }
+
+    /**
+     * Case-insensitive search for an ASCII string. The candidates for the first character are located with
+     * String.indexOf(int), which the JIT compiles to a vectorized scan.
+     */
+    private static int indexOfIgnoreCase(String s, String lowerCaseNeedle, int fromIndex) {
+        char lowerCaseFirst = lowerCaseNeedle.charAt(0);
+        char upperCaseFirst = Character.toUpperCase(lowerCaseFirst);
+        int nextLowerCase = s.indexOf(lowerCaseFirst, fromIndex);
+        int nextUpperCase = s.indexOf(upperCaseFirst, fromIndex);
+        while (nextLowerCase >= 0 || nextUpperCase >= 0) {
+            int i;
+            if (nextUpperCase < 0 || (nextLowerCase >= 0 && nextLowerCase < nextUpperCase)) {
+                i = nextLowerCase;
+                nextLowerCase = s.indexOf(lowerCaseFirst, i + 1);
+            } else {
+                i = nextUpperCase;
+                nextUpperCase = s.indexOf(upperCaseFirst, i + 1);
+            }
+            if (s.regionMatches(true, i + 1, lowerCaseNeedle, 1, lowerCaseNeedle.length() - 1)) {
+                return i;
             }
+        }
+        return -1;
+    }
+
+    public static URL stackOverflowLinkFromSourceCodeLine(String line) {
+        // most source code lines do not contain a link, reject them without running the regex and without logging
+        if (!mayContainStackOverflowLink(line)) {
+            return null;
+        }
 
-            Matcher longAnswerMatcher = stackOverflowLongAnswerLinkPattern.matcher(url);
-            if (longAnswerMatcher.find()) {
-                return new URL("https://stackoverflow.com/a/" + longAnswerMatcher.group(1));
+        Matcher stackOverflowMatcher = stackOverflowLinkPattern.matcher(line);
+        if (stackOverflowMatcher.find()) {
+            String url = stackOverflowMatcher.group(1);
+            URLParseResult result = tryParse(url);
+            if (result.isValid()) {
+                return result.getUrl();
             }
 
-            Matcher shortQuestionMatcher = stackOverflowShortQuestionLinkPattern.matcher(url);
-            if (shortQuestionMatcher.find()) {
-                return new URL("https://stackoverflow.com/q/" + shortQuestionMatcher.group(1));
+            // Java's URL class doesn't accept SO search URLs like https://stackoverflow.com/search?q=user:9841338+[python]
+            // This workaround ignores everything after the problematic colon character
+            Matcher stackOverflowSearchMatcher = stackOverflowSearchLinkPattern.matcher(url);
+            if (stackOverflowSearchMatcher.find()) {
+                result = tryParse(stackOverflowSearchMatcher.group(1));
+                if (result.isValid()) {
+                    return result.getUrl();
+                }
             }
+            logger.warning("Invalid Stack Overflow link", result::getErrorMessage);
+            return null;
+        }
+        logger.info("No Stack Overflow link found", () -> "No Stack Overflow link found in: " + line);
+        return null;
+    }
 
-            Matcher longQuestionMatcher = stackOverflowLongQuestionLinkPattern.matcher(url);
-            if (longQuestionMatcher.find()) {
-                return new URL("https://stackoverflow.com/q/" + longQuestionMatcher.group(1));
+    public static URL getNormalizedStackOverflowLink(URL url) {
+        return getNormalizedStackOverflowLink(url.getUrlString());
+    }
+
+    public static URL getNormalizedStackOverflowLink(String url) {
+        StackOverflowLink stackOverflowLink = StackOverflowLink.classify(url);
+        if (stackOverflowLink != null) {
+            URLParseResult result = tryParse(stackOverflowLink.getNormalizedLink());
+            if (result.isValid()) {
+                return result.getUrl();
             }
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
+            logger.warning("Invalid normalized link", result::getErrorMessage);
         }
 
-        logger.info("Normalization of link failed: " + url);
+        logger.info("Normalization of link failed", () -> "Normalization of link failed: " + url);
         return null;
     }
 }
@@ -0,0 +1,77 @@
+package org.sotorrent.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Opt-in, size-bounded, thread-safe cache of URL parse results keyed by the raw URL string.
+ * Both valid URLs and failures are cached, thus an instance can be shared by parallel workers that
+ * encounter the same links in many posts and post versions.
+ * Entries are evicted in (segment-wise) least-recently-used order, which keeps the frequently linked
+ * hosts and posts of the skewed link distribution in the cache.
+ */
+public class URLCache {
+    private final Cache<String, URLParseResult> cache;
+
+    public URLCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Same as {@link URL#URL(String)}, but returns cached results for URL strings seen before.
+     * @throws MalformedURLException if the URL is invalid (also for cached failures, use
+     * {@link #tryGet(String)} to avoid creating an exception for each invalid URL)
+     */
+    public URL get(String url) throws MalformedURLException {
+        if (url == null) {
+            // Guava caches do not support null keys
+            return new URL(url);
+        }
+
+        URLParseResult result = tryGet(url);
+        if (!result.isValid()) {
+            throw new MalformedURLException(result.getErrorMessage());
+        }
+        return result.getUrl();
+    }
+
+    /**
+     * Same as {@link URL#tryParse(String)}, but returns cached results for URL strings seen before.
+     * getUrl() of a cached result returns the same URL object on every call.
+     */
+    public URLParseResult tryGet(String url) {
+        if (url == null) {
+            return URL.tryParse(url);
+        }
+
+        try {
+            return cache.get(url, () -> URL.tryParse(url).withUrl());
+        } catch (ExecutionException e) {
+            // tryParse(...) does not throw checked exceptions
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return hit and miss counts (hits include cached failures)
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,58 @@
+package org.sotorrent.util;
+
+/**
+ * Stable 64-bit fingerprint of a URL string (64-bit FNV-1a over the characters followed by the finalization step of
+ * MurmurHash3), with protocol and host compared case-insensitively. The fingerprint does not depend on the JVM
+ * and can be stored across runs. It is computed directly from the components, without concatenating strings.
+ * URL, URLView, and StackOverflowLink yield the same fingerprint for the same normalized link.
+ */
+final class URLFingerprint {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    URLFingerprint update(char c) {
+        hash = (hash ^ c) * PRIME;
+        return this;
+    }
+
+    URLFingerprint update(CharSequence s) {
+        return update(s, 0, s.length());
+    }
+
+    URLFingerprint update(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            update(s.charAt(i));
+        }
+        return this;
+    }
+
+    URLFingerprint updateLowerCase(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            update(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return this;
+    }
+
+    long getValue() {
+        long value = hash;
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * @param hostEnd end of the host, the characters before are compared case-insensitively
+     */
+    static long of(CharSequence urlString, int start, int hostEnd, int end) {
+        return new URLFingerprint()
+                .updateLowerCase(urlString, start, hostEnd)
+                .update(urlString, hostEnd, end)
+                .getValue();
+    }
+}
@@ -0,0 +1,96 @@
+package org.sotorrent.util;
+
+/**
+ * Outcome of {@link URL#tryParse(String)} and {@link URLView#tryParse(CharSequence)}.
+ * Invalid input is reported through the status instead of a MalformedURLException, which avoids filling in a stack
+ * trace for the many invalid link candidates in post bodies. The error message is only created on demand.
+ */
+public final class URLParseResult {
+    public enum Status {
+        VALID, EMPTY, MALFORMED, INVALID_TOP_LEVEL_DOMAIN
+    }
+
+    private final Status status;
+    private final URLView view; // null if the input is invalid
+    private final URL url; // created on demand unless the result is cached (see URLCache)
+    // region of the input the error message refers to
+    private final CharSequence source;
+    private final int errorStart;
+    private final int errorEnd;
+
+    URLParseResult(URLView view) {
+        this(view, null);
+    }
+
+    private URLParseResult(URLView view, URL url) {
+        this.status = view.isEmpty() ? Status.EMPTY : Status.VALID;
+        this.view = view;
+        this.url = url;
+        this.source = null;
+        this.errorStart = this.errorEnd = -1;
+    }
+
+    URLParseResult(Status status, CharSequence source, int errorStart, int errorEnd) {
+        this.status = status;
+        this.view = null;
+        this.url = null;
+        this.source = source;
+        this.errorStart = errorStart;
+        this.errorEnd = errorEnd;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the input is a valid or empty URL, i.e., if the URL constructor would not throw an exception
+     */
+    public boolean isValid() {
+        return view != null;
+    }
+
+    /**
+     * @return the parsed URL or null if the input is invalid
+     */
+    public URLView getView() {
+        return view;
+    }
+
+    /**
+     * @return a URL object with the components of the parsed URL (a new one unless the result is cached) or null if
+     * the input is invalid
+     */
+    public URL getUrl() {
+        if (url != null) {
+            return url;
+        }
+        return view == null ? null : view.toURL();
+    }
+
+    /**
+     * @return result that returns the same URL object on every call of getUrl()
+     */
+    URLParseResult withUrl() {
+        return view == null || url != null ? this : new URLParseResult(view, view.toURL());
+    }
+
+    /**
+     * @return the message of the MalformedURLException the URL constructor throws for this input or null if it is valid
+     */
+    public String getErrorMessage() {
+        switch (status) {
+            case MALFORMED:
+                return "Malformed URL: " + source.subSequence(errorStart, errorEnd);
+            case INVALID_TOP_LEVEL_DOMAIN:
+                return "Invalid Top Level Domain: " + source.subSequence(errorStart, errorEnd);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? status + ": " + view : status + ": " + getErrorMessage();
+    }
+}
@@ -0,0 +1,234 @@
+package org.sotorrent.util;
+
+/**
+ * Hand-written single-pass scanner accepting exactly the language of {@link URL#getUrlPattern()}.
+ * Instead of creating substrings, the scanner records the component boundaries as offsets into the parsed input.
+ */
+final class URLParser {
+    // indices into the offset array filled by parse(...); absent components have start and end -1
+    static final int PROTOCOL_START = 0;
+    static final int PROTOCOL_END = 1;
+    static final int HOST_START = 2;
+    static final int HOST_END = 3;
+    static final int ROOT_DOMAIN_START = 4; // filled by URL.resolveRootDomain(...) using the public suffix list
+    static final int TOP_LEVEL_DOMAIN_START = 5;
+    static final int PATH_START = 6; // including the leading slash
+    static final int PATH_END = 7;
+    static final int QUERY_START = 8; // excluding the question mark
+    static final int QUERY_END = 9;
+    static final int FRAGMENT_START = 10; // excluding the hash character
+    static final int FRAGMENT_END = 11;
+    static final int MATCH_END = 12;
+    static final int URL_START = 13; // region after cleanup, filled by URLView
+    static final int URL_END = 14;
+    static final int OFFSET_COUNT = 15;
+
+    // character classes of the URL regex (see URL.allowedCharacters)
+    private static final byte DOMAIN = 1; // [\w\-]
+    private static final byte PATH = 2; // [\w\-.,@^=%&:/~+]
+    private static final byte QUERY = 4; // path characters and ?
+    private static final byte FRAGMENT = 8; // query characters and #!
+    private static final byte[] characterClasses = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            addCharacterClass(c, DOMAIN | PATH | QUERY | FRAGMENT);
+            addCharacterClass(Character.toUpperCase(c), DOMAIN | PATH | QUERY | FRAGMENT);
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            addCharacterClass(c, DOMAIN | PATH | QUERY | FRAGMENT);
+        }
+        addCharacterClass('_', DOMAIN | PATH | QUERY | FRAGMENT);
+        addCharacterClass('-', DOMAIN | PATH | QUERY | FRAGMENT);
+        for (char c : ".,@^=%&:/~+".toCharArray()) {
+            addCharacterClass(c, PATH | QUERY | FRAGMENT);
+        }
+        addCharacterClass('?', QUERY | FRAGMENT);
+        addCharacterClass('#', FRAGMENT);
+        addCharacterClass('!', FRAGMENT);
+    }
+
+    private URLParser() { }
+
+    private static void addCharacterClass(char c, int characterClass) {
+        characterClasses[c] |= characterClass;
+    }
+
+    private static boolean is(char c, byte characterClass) {
+        return c < 128 && (characterClasses[c] & characterClass) != 0;
+    }
+
+    private static boolean equalsIgnoreCase(char c, char lowerCaseAsciiLetter) {
+        return (c | 0x20) == lowerCaseAsciiLetter;
+    }
+
+    /**
+     * Start of the input after removing leading whitespace (same semantics as {@link String#trim()}).
+     */
+    static int trimStart(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * End of the input after removing trailing whitespace, trailing punctuation, and trailing escaped line breaks
+     * (same semantics as the former substring-based cleanup in URL).
+     */
+    static int cleanEnd(CharSequence s, int start, int end) {
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int length = -1;
+        while (length != end - start) {
+            length = end - start;
+            while (end > start && isTrailingPunctuation(s.charAt(end - 1))) {
+                end--;
+            }
+            while (endsWithEscapedLineBreak(s, start, end)) {
+                end -= 4;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isTrailingPunctuation(char c) {
+        return c == '.' || c == ',' || c == ':' || c == ';' || c == '%' || c == '#';
+    }
+
+    private static boolean endsWithEscapedLineBreak(CharSequence s, int start, int end) {
+        // &#xA or &#xD
+        return end - start >= 4
+                && s.charAt(end - 4) == '&' && s.charAt(end - 3) == '#' && s.charAt(end - 2) == 'x'
+                && (s.charAt(end - 1) == 'A' || s.charAt(end - 1) == 'D');
+    }
+
+    /**
+     * Scan the protocol (http, https, or ftp, case-insensitive) starting at the given position.
+     * @return the end of the protocol or -1 if there is no valid protocol at this position
+     */
+    static int scanProtocol(CharSequence s, int start, int end) {
+        if (end - start >= 4
+                && equalsIgnoreCase(s.charAt(start), 'h') && equalsIgnoreCase(s.charAt(start + 1), 't')
+                && equalsIgnoreCase(s.charAt(start + 2), 't') && equalsIgnoreCase(s.charAt(start + 3), 'p')) {
+            if (end - start >= 5 && equalsIgnoreCase(s.charAt(start + 4), 's')) {
+                return start + 5;
+            }
+            return start + 4;
+        }
+        if (end - start >= 3
+                && equalsIgnoreCase(s.charAt(start), 'f') && equalsIgnoreCase(s.charAt(start + 1), 't')
+                && equalsIgnoreCase(s.charAt(start + 2), 'p')) {
+            return start + 3;
+        }
+        return -1;
+    }
+
+    /**
+     * Validate the region [start, end) of the input and record the component boundaries.
+     * @param offsets array of length OFFSET_COUNT, filled with absolute offsets into s
+     * @return true if the complete region matches the URL regex (same semantics as Matcher.matches())
+     */
+    static boolean parse(CharSequence s, int start, int end, int[] offsets) {
+        // the regex is unambiguous, thus the greedy match is the only candidate for a complete match
+        return match(s, start, end, offsets) == end;
+    }
+
+    /**
+     * Find the next occurrence of the URL regex in [start, end) and record its component boundaries.
+     * @param offsets array of length OFFSET_COUNT, filled with absolute offsets into s
+     * @return the start of the match or -1 if there is none (same semantics as Matcher.find())
+     */
+    static int find(CharSequence s, int start, int end, int[] offsets) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if ((equalsIgnoreCase(c, 'h') || equalsIgnoreCase(c, 'f')) && match(s, i, end, offsets) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Match the URL regex at the given position and record the component boundaries.
+     * @param offsets array of length OFFSET_COUNT, filled with absolute offsets into s
+     * @return the end of the longest match starting at start or -1 if there is none (same semantics as Matcher.lookingAt())
+     */
+    static int match(CharSequence s, int start, int end, int[] offsets) {
+        // protocol
+        int i = scanProtocol(s, start, end);
+        if (i < 0 || end - i < 3 || s.charAt(i) != ':' || s.charAt(i + 1) != '/' || s.charAt(i + 2) != '/') {
+            return -1;
+        }
+        offsets[PROTOCOL_START] = start;
+        offsets[PROTOCOL_END] = i;
+        i += 3;
+
+        // complete domain: at least two non-empty labels separated by dots
+        int hostStart = i;
+        int labelStart = i;
+        int previousLabelStart = -1;
+        i = scan(s, i, end, DOMAIN);
+        while (i > labelStart && i + 1 < end && s.charAt(i) == '.' && is(s.charAt(i + 1), DOMAIN)) {
+            previousLabelStart = labelStart;
+            labelStart = i + 1;
+            i = scan(s, labelStart, end, DOMAIN);
+        }
+        if (previousLabelStart < 0) {
+            return -1;
+        }
+        offsets[HOST_START] = hostStart;
+        offsets[HOST_END] = i;
+        offsets[ROOT_DOMAIN_START] = -1;
+        offsets[TOP_LEVEL_DOMAIN_START] = labelStart;
+
+        // path
+        offsets[PATH_START] = offsets[PATH_END] = -1;
+        if (i < end && s.charAt(i) == '/') {
+            offsets[PATH_START] = i;
+            i = scanBracketExpression(s, scan(s, i + 1, end, PATH), end);
+            offsets[PATH_END] = i;
+        }
+
+        // query
+        offsets[QUERY_START] = offsets[QUERY_END] = -1;
+        if (i < end && s.charAt(i) == '?') {
+            offsets[QUERY_START] = i + 1;
+            i = scan(s, i + 1, end, QUERY);
+            offsets[QUERY_END] = i;
+        }
+
+        // fragment identifier (requires at least one character)
+        offsets[FRAGMENT_START] = offsets[FRAGMENT_END] = -1;
+        if (i + 1 < end && s.charAt(i) == '#' && is(s.charAt(i + 1), FRAGMENT)) {
+            offsets[FRAGMENT_START] = i + 1;
+            i = scanBracketExpression(s, scan(s, i + 1, end, FRAGMENT), end);
+            offsets[FRAGMENT_END] = i;
+        }
+
+        offsets[MATCH_END] = i;
+        return i;
+    }
+
+    private static int scan(CharSequence s, int i, int end, byte characterClass) {
+        while (i < end && is(s.charAt(i), characterClass)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int scanBracketExpression(CharSequence s, int i, int end) {
+        // optional \([\w\-.,@^=%&:/~+]+\), returns i if there is no bracket expression at this position
+        if (i >= end || s.charAt(i) != '(') {
+            return i;
+        }
+        int contentStart = i + 1;
+        int contentEnd = scan(s, contentStart, end, PATH);
+        if (contentEnd == contentStart || contentEnd == end || s.charAt(contentEnd) != ')') {
+            return i;
+        }
+        return contentEnd + 1;
+    }
+}
@@ -0,0 +1,307 @@
+package org.sotorrent.util;
+
+import java.net.MalformedURLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lightweight alternative to {@link URL} that only stores the source char sequence and the offsets of the URL
+ * components. Component strings are created when a getter is called and are not cached.
+ * A view can point to a region of a larger post body without copying it, but keeps the complete body reachable.
+ */
+public final class URLView {
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+    private final int protocolEnd;
+    private final int hostStart;
+    private final int hostEnd;
+    private final int rootDomainStart;
+    private final int topLevelDomainStart;
+    private final int pathStart;
+    private final int pathEnd;
+    private final int queryStart;
+    private final int queryEnd;
+    private final int fragmentStart;
+    private final int fragmentEnd;
+
+    private URLView(CharSequence source, int start, int end, int[] offsets) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+
+        if (isEmpty()) {
+            this.protocolEnd = this.hostStart = this.hostEnd = this.rootDomainStart = this.topLevelDomainStart = -1;
+            this.pathStart = this.pathEnd = this.queryStart = this.queryEnd = this.fragmentStart = this.fragmentEnd = -1;
+            return;
+        }
+
+        this.protocolEnd = offsets[URLParser.PROTOCOL_END];
+        this.hostStart = offsets[URLParser.HOST_START];
+        this.hostEnd = offsets[URLParser.HOST_END];
+        this.rootDomainStart = offsets[URLParser.ROOT_DOMAIN_START];
+        this.topLevelDomainStart = offsets[URLParser.TOP_LEVEL_DOMAIN_START];
+        this.pathStart = offsets[URLParser.PATH_START];
+        this.pathEnd = offsets[URLParser.PATH_END];
+        this.queryStart = offsets[URLParser.QUERY_START];
+        this.queryEnd = offsets[URLParser.QUERY_END];
+        this.fragmentStart = offsets[URLParser.FRAGMENT_START];
+        this.fragmentEnd = offsets[URLParser.FRAGMENT_END];
+    }
+
+    /**
+     * Clean up and validate the region [start, end) of source in the same way as {@link URL#URL(String)}.
+     * @param offsets array of length URLParser.OFFSET_COUNT, URL_START and URL_END contain the cleaned region
+     */
+    private static URLParseResult.Status validate(CharSequence source, int start, int end, int[] offsets) {
+        // remove surrounding whitespace, trailing punctuation, and trailing escaped line breaks
+        start = URLParser.trimStart(source, start, end);
+        end = URLParser.cleanEnd(source, start, end);
+        offsets[URLParser.URL_START] = start;
+        offsets[URLParser.URL_END] = end;
+
+        if (start == end) {
+            return URLParseResult.Status.EMPTY;
+        }
+        if (!URLParser.parse(source, start, end, offsets)) {
+            return URLParseResult.Status.MALFORMED;
+        }
+        if (!URL.resolveRootDomain(source, offsets)) {
+            return URLParseResult.Status.INVALID_TOP_LEVEL_DOMAIN;
+        }
+        return URLParseResult.Status.VALID;
+    }
+
+    public static URLParseResult tryParse(CharSequence source) {
+        return tryParse(source, 0, source.length());
+    }
+
+    public static URLParseResult tryParse(CharSequence source, int start, int end) {
+        int[] offsets = new int[URLParser.OFFSET_COUNT];
+        URLParseResult.Status status = validate(source, start, end, offsets);
+        switch (status) {
+            case MALFORMED:
+                return new URLParseResult(status, source, offsets[URLParser.URL_START], offsets[URLParser.URL_END]);
+            case INVALID_TOP_LEVEL_DOMAIN:
+                return new URLParseResult(status, source, offsets[URLParser.TOP_LEVEL_DOMAIN_START], offsets[URLParser.HOST_END]);
+            default:
+                return new URLParseResult(new URLView(source, offsets[URLParser.URL_START], offsets[URLParser.URL_END], offsets));
+        }
+    }
+
+    public static URLView parse(CharSequence source) throws MalformedURLException {
+        return parse(source, 0, source.length());
+    }
+
+    public static URLView parse(CharSequence source, int start, int end) throws MalformedURLException {
+        URLParseResult result = tryParse(source, start, end);
+        if (!result.isValid()) {
+            throw new MalformedURLException(result.getErrorMessage());
+        }
+        return result.getView();
+    }
+
+    public URL toURL() {
+        return new URL(this);
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * @return start of the (cleaned) URL in the source
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return end of the (cleaned) URL in the source (exclusive)
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    // offsets for classes that process the components without creating strings (-1 if absent)
+
+    int getHostStart() {
+        return hostStart;
+    }
+
+    int getHostEnd() {
+        return hostEnd;
+    }
+
+    int getPathStart() {
+        return pathStart;
+    }
+
+    int getPathEnd() {
+        return pathEnd;
+    }
+
+    public String getUrlString() {
+        return substring(start, end);
+    }
+
+    public String getProtocol() {
+        if (isEmpty()) {
+            return null;
+        }
+        // the protocol is either http, https, or ftp (see URL.protocolRegex)
+        switch (protocolEnd - start) {
+            case 5:
+                return "https";
+            case 4:
+                return "http";
+            default:
+                return "ftp";
+        }
+    }
+
+    public String getCompleteDomain() {
+        return getComponent(hostStart, hostEnd);
+    }
+
+    public String getRootDomain() {
+        return getComponent(rootDomainStart, hostEnd);
+    }
+
+    public String getTopLevelDomain() {
+        return getComponent(topLevelDomainStart, hostEnd);
+    }
+
+    public String getPath() {
+        if (pathStart < 0) {
+            return null;
+        }
+
+        // remove leading slash
+        int start = pathStart + 1;
+        int end = pathEnd;
+
+        // remove trailing slash
+        if (end > start && source.charAt(end-1) == '/') {
+            end--;
+        }
+
+        // return null if path is empty (whitespaces are not allowed in URLs)
+        if (start == end) {
+            return null;
+        }
+
+        // return null if path only contains punctuation (extracted from Markdown)
+        if (end - start == 1) {
+            char c = source.charAt(start);
+            if (c == '.' || c == ',' || c == ':') {
+                return null;
+            }
+        }
+
+        return substring(start, end);
+    }
+
+    public String getQuery() {
+        return getComponent(queryStart, queryEnd);
+    }
+
+    public String getFragmentIdentifier() {
+        return getComponent(fragmentStart, fragmentEnd);
+    }
+
+    /**
+     * @return same fingerprint as {@link URL#getFingerprint()}, computed without creating strings
+     */
+    public long getFingerprint() {
+        return URLFingerprint.of(source, start, isEmpty() ? start : hostEnd, end);
+    }
+
+    private String getComponent(int start, int end) {
+        // absent or empty components are represented as null
+        if (start < 0 || start == end) {
+            return null;
+        }
+        return substring(start, end);
+    }
+
+    private String substring(int start, int end) {
+        if (source instanceof String) {
+            return ((String) source).substring(start, end);
+        }
+        return source.subSequence(start, end).toString();
+    }
+
+    @Override
+    public String toString() {
+        return getUrlString();
+    }
+
+    /**
+     * Extract all valid URLs from a post body in a single pass, ignoring URLs in Markdown inline code.
+     * This yields the same URLs as applying URL.getUrlPattern() and URL.inInlineCode(...) to each match,
+     * but the backtick counts are maintained incrementally instead of being recounted for each match.
+     * @param content the content to extract the URLs from
+     * @return lazily populated stream of views on the content in the order of their occurrence
+     */
+    public static Stream<URLView> extractAll(CharSequence content) {
+        return extractAll(content, true);
+    }
+
+    public static Stream<URLView> extractAll(CharSequence content, boolean ignoreInlineCode) {
+        return StreamSupport.stream(new URLViewSpliterator(content, ignoreInlineCode), false);
+    }
+
+    private static class URLViewSpliterator extends Spliterators.AbstractSpliterator<URLView> {
+        private final CharSequence content;
+        private final boolean ignoreInlineCode;
+        private final int[] offsets = new int[URLParser.OFFSET_COUNT];
+        private int position = 0;
+        private int backticksBefore = 0; // backticks in [0, position)
+        private int backticksTotal = -1; // counted on first demand
+
+        private URLViewSpliterator(CharSequence content, boolean ignoreInlineCode) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.content = content;
+            this.ignoreInlineCode = ignoreInlineCode;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super URLView> action) {
+            while (position < content.length()) {
+                int matchStart = URLParser.find(content, position, content.length(), offsets);
+                if (matchStart < 0) {
+                    position = content.length();
+                    return false;
+                }
+                int matchEnd = offsets[URLParser.MATCH_END];
+
+                // URLs cannot contain backticks, thus it is sufficient to count the ones before the match
+                backticksBefore += URL.countBackticks(content, position, matchStart);
+                position = matchEnd;
+                if (ignoreInlineCode && backticksBefore%2 != 0) {
+                    if (backticksTotal < 0) {
+                        backticksTotal = backticksBefore + URL.countBackticks(content, matchStart, content.length());
+                    }
+                    if (URL.inInlineCode(backticksBefore, backticksTotal - backticksBefore)) {
+                        continue;
+                    }
+                }
+
+                // skip invalid URLs, e.g., with invalid top-level domain
+                if (validate(content, matchStart, matchEnd, offsets) == URLParseResult.Status.VALID) {
+                    action.accept(new URLView(content, offsets[URLParser.URL_START], offsets[URLParser.URL_END], offsets));
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.sotorrent.util;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.sotorrent.util.exceptions.WriteBehindException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Inserts entities asynchronously, such that producers only wait for the database if the queue is full.
+ * Entities are taken from a bounded queue by writerCount threads, each with its own {@link StatelessSession} (and
+ * thus its own connection), and inserted in JDBC batches (see
+ * {@link HibernateUtils#insertListBatched(StatelessSession, List, int, int)}).
+ * The order of inserts is not preserved across batches. If a batch fails, the error is thrown by the next call of
+ * {@link #add(Object)}, {@link #flush()}, {@link #awaitTermination()}, or {@link #close()}, and the remaining
+ * entities are discarded.
+ */
+public class WriteBehindWriter implements AutoCloseable {
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final SessionFactory sessionFactory;
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final List<Thread> writers = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean closed = false; // set while holding progressLock
+
+    // guarded by progressLock
+    private final Object progressLock = new Object();
+    private long addedCount = 0;
+    private long processedCount = 0;
+    private int addingCount = 0; // producers that passed the closed check, but have not yet queued their entity
+
+    /**
+     * @param queueCapacity maximum number of entities that have been added, but not yet taken by a writer
+     * @param batchSize maximum number of entities per JDBC batch and transaction
+     */
+    public WriteBehindWriter(SessionFactory sessionFactory, int writerCount, int queueCapacity, int batchSize) {
+        if (writerCount < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Writer count and batch size must be positive.");
+        }
+        this.sessionFactory = sessionFactory;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+
+        for (int i = 0; i < writerCount; i++) {
+            Thread writer = new Thread(this::write, "WriteBehindWriter-" + i);
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    /**
+     * Queue an entity for insertion, blocks while the queue is full.
+     * @throws WriteBehindException if a previous batch failed
+     */
+    public void add(Object entity) throws InterruptedException {
+        checkFailure();
+        synchronized (progressLock) {
+            if (closed) {
+                throw new IllegalStateException("Writer has been closed.");
+            }
+            addedCount++;
+            addingCount++;
+        }
+        try {
+            // writers may have stopped after a failure
+            while (!queue.offer(entity, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException | WriteBehindException e) {
+            synchronized (progressLock) {
+                addedCount--; // entity has not been queued
+            }
+            throw e;
+        } finally {
+            synchronized (progressLock) {
+                addingCount--;
+                progressLock.notifyAll();
+            }
+        }
+    }
+
+    public void addAll(List<?> entities) throws InterruptedException {
+        for (Object entity : entities) {
+            add(entity);
+        }
+    }
+
+    private void write() {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            List<Object> batch = new ArrayList<>(batchSize);
+            while (!closed || !queue.isEmpty()) {
+                Object entity = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (entity == null) {
+                    continue;
+                }
+                batch.add(entity);
+                queue.drainTo(batch, batchSize - 1);
+
+                if (failure.get() == null) {
+                    try {
+                        HibernateUtils.insertListBatched(session, batch, batchSize, batchSize);
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    }
+                }
+                onProcessed(batch.size());
+                batch.clear();
+            }
+        } catch (Throwable e) {
+            fail(e); // e.g., no connection available, flush() and close() rethrow it
+        }
+    }
+
+    private void fail(Throwable e) {
+        failure.compareAndSet(null, e);
+        synchronized (progressLock) {
+            progressLock.notifyAll();
+        }
+    }
+
+    private void onProcessed(int count) {
+        synchronized (progressLock) {
+            processedCount += count;
+            progressLock.notifyAll();
+        }
+    }
+
+    private void checkFailure() {
+        Throwable e = failure.get();
+        if (e != null) {
+            throw new WriteBehindException("Writing entities failed.", e);
+        }
+    }
+
+    /**
+     * Wait until all added entities have been written.
+     * @throws WriteBehindException if a batch failed
+     */
+    public void flush() throws InterruptedException {
+        synchronized (progressLock) {
+            while (processedCount < addedCount && failure.get() == null) {
+                progressLock.wait();
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * @return number of entities that have been added, but not yet written
+     */
+    public long getPendingCount() {
+        synchronized (progressLock) {
+            return addedCount - processedCount;
+        }
+    }
+
+    /**
+     * Same as {@link #awaitTermination()}, but an interruption is reported as {@link WriteBehindException}, with the
+     * interrupt flag of the calling thread restored.
+     * @throws WriteBehindException if a batch failed or the calling thread was interrupted
+     */
+    @Override
+    public void close() {
+        try {
+            awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WriteBehindException("Interrupted while waiting for the writers.", e);
+        }
+    }
+
+    /**
+     * Write the remaining entities and stop the writers.
+     * @throws WriteBehindException if a batch failed
+     */
+    public void awaitTermination() throws InterruptedException {
+        synchronized (progressLock) {
+            closed = true;
+            // writers stop once the queue is empty, thus wait until concurrent add() calls have queued their entities
+            while (addingCount > 0) {
+                progressLock.wait();
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        checkFailure();
+    }
+}
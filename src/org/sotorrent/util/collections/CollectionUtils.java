@@ -1,12 +1,34 @@
 package org.sotorrent.util.collections;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 public class CollectionUtils {
+    // number of chunks per thread of the pool, such that idle threads can steal the remaining chunks
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Split the list into partitionCount sublists of equal length (the last sublists are empty if the list has fewer
+     * elements than partitions).
+     * @deprecated sublists of equal length take different times if the costs of the elements differ, use
+     * {@link #splitByCost(List, ToLongFunction, int)} or {@link #forEachBalanced(ForkJoinPool, List, ToLongFunction, Consumer)}
+     */
+    @Deprecated
     public static <T> List<T>[] split(List<T> list, int partitionCount) {
         int partitionSize = (int)Math.ceil((double)list.size()/partitionCount);
         @SuppressWarnings("unchecked")
         List<T>[] subLists = new List[partitionCount];
+        Arrays.fill(subLists, Collections.emptyList());
         int subListIndex = 0;
         for (int i=0; i<list.size(); i+=partitionSize) {
             subLists[subListIndex] = list.subList(i, Math.min(list.size(), i+partitionSize));
@@ -14,4 +36,189 @@ public class CollectionUtils {
         }
         return subLists;
     }
+
+    /**
+     * Split the list into at most partitionCount consecutive sublists with about the same total cost (e.g., the
+     * length of posts). Each sublist ends at the element boundary closest to its share of the total cost, thus
+     * expensive elements tend to get a sublist of their own.
+     * @param cost non-negative cost of an element
+     */
+    public static <T> List<List<T>> splitByCost(List<T> list, ToLongFunction<? super T> cost, int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Partition count must be positive: " + partitionCount);
+        }
+        list = asRandomAccess(list);
+        long[] prefixCosts = prefixCosts(list, cost);
+        long totalCost = prefixCosts[list.size()];
+
+        List<List<T>> subLists = new ArrayList<>(partitionCount);
+        int from = 0;
+        for (int partition = 1; partition <= partitionCount && from < list.size(); partition++) {
+            // end of the partition where the cumulative cost reaches its share of the total cost
+            long targetCost = totalCost / partitionCount * partition + totalCost % partitionCount * partition / partitionCount;
+            int to = list.size();
+            if (partition < partitionCount) {
+                to = upperIndex(prefixCosts, targetCost);
+                if (to - 1 > from && targetCost - prefixCosts[to - 1] < prefixCosts[to] - targetCost) {
+                    to--; // end before an expensive element that would exceed the share by more
+                }
+                to = Math.max(from + 1, to);
+            }
+            subLists.add(list.subList(from, to));
+            from = to;
+        }
+        return subLists;
+    }
+
+    /**
+     * Apply action to all elements on the pool. The list is split recursively into consecutive chunks with about the
+     * same total cost, such that each thread gets several chunks and idle threads steal chunks from busy ones.
+     * @param cost non-negative cost of an element, e.g., the length of a post
+     * @return statistics of the chunks in the order of the list
+     */
+    public static <T> List<PartitionStatistics> forEachBalanced(ForkJoinPool pool, List<T> list,
+                                                                ToLongFunction<? super T> cost, Consumer<? super T> action) {
+        list = asRandomAccess(list);
+        long[] prefixCosts = prefixCosts(list, cost);
+        long maxChunkCost = Math.max(1, prefixCosts[list.size()] / ((long) pool.getParallelism() * CHUNKS_PER_THREAD));
+
+        Queue<PartitionStatistics> statistics = new ConcurrentLinkedQueue<>();
+        if (!list.isEmpty()) {
+            pool.invoke(new BalancedTask<>(list, prefixCosts, maxChunkCost, action, 0, list.size(), statistics));
+        }
+        List<PartitionStatistics> sortedStatistics = new ArrayList<>(statistics);
+        sortedStatistics.sort(Comparator.comparingInt(PartitionStatistics::getFromIndex));
+        return sortedStatistics;
+    }
+
+    private static <T> List<T> asRandomAccess(List<T> list) {
+        return list instanceof RandomAccess ? list : new ArrayList<>(list);
+    }
+
+    /**
+     * @return prefixCosts[i] is the total cost of the first i elements
+     */
+    private static <T> long[] prefixCosts(List<T> list, ToLongFunction<? super T> cost) {
+        long[] prefixCosts = new long[list.size() + 1];
+        for (int i = 0; i < list.size(); i++) {
+            long elementCost = cost.applyAsLong(list.get(i));
+            if (elementCost < 0) {
+                throw new IllegalArgumentException("Cost must not be negative: " + elementCost);
+            }
+            prefixCosts[i + 1] = prefixCosts[i] + elementCost;
+        }
+        return prefixCosts;
+    }
+
+    /**
+     * @return smallest index i with prefixCosts[i] >= cost
+     */
+    private static int upperIndex(long[] prefixCosts, long cost) {
+        int i = Arrays.binarySearch(prefixCosts, cost);
+        if (i < 0) {
+            return -(i + 1);
+        }
+        while (i > 0 && prefixCosts[i - 1] == cost) {
+            i--; // elements with cost 0
+        }
+        return i;
+    }
+
+    private static class BalancedTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> list;
+        private final long[] prefixCosts;
+        private final long maxChunkCost;
+        private final Consumer<? super T> action;
+        private final int from;
+        private final int to;
+        private final Queue<PartitionStatistics> statistics;
+
+        private BalancedTask(List<T> list, long[] prefixCosts, long maxChunkCost, Consumer<? super T> action,
+                             int from, int to, Queue<PartitionStatistics> statistics) {
+            this.list = list;
+            this.prefixCosts = prefixCosts;
+            this.maxChunkCost = maxChunkCost;
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected void compute() {
+            long cost = prefixCosts[to] - prefixCosts[from];
+            if (cost > maxChunkCost && to - from > 1) {
+                // split at half of the cost, not at half of the elements
+                int middle = upperIndex(prefixCosts, prefixCosts[from] + cost / 2);
+                middle = Math.min(to - 1, Math.max(from + 1, middle));
+                invokeAll(new BalancedTask<>(list, prefixCosts, maxChunkCost, action, from, middle, statistics),
+                        new BalancedTask<>(list, prefixCosts, maxChunkCost, action, middle, to, statistics));
+                return;
+            }
+
+            long start = System.nanoTime();
+            for (int i = from; i < to; i++) {
+                action.accept(list.get(i));
+            }
+            statistics.add(new PartitionStatistics(from, to, cost, Thread.currentThread().getName(),
+                    System.nanoTime() - start));
+        }
+    }
+
+    public static class PartitionStatistics {
+        private final int fromIndex;
+        private final int toIndex;
+        private final long cost;
+        private final String threadName;
+        private final long durationNanos;
+
+        private PartitionStatistics(int fromIndex, int toIndex, long cost, String threadName, long durationNanos) {
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.cost = cost;
+            this.threadName = threadName;
+            this.durationNanos = durationNanos;
+        }
+
+        public int getFromIndex() {
+            return fromIndex;
+        }
+
+        /**
+         * @return index after the last element of the partition
+         */
+        public int getToIndex() {
+            return toIndex;
+        }
+
+        public int getElementCount() {
+            return toIndex - fromIndex;
+        }
+
+        /**
+         * @return total cost of the elements
+         */
+        public long getCost() {
+            return cost;
+        }
+
+        /**
+         * @return name of the thread that processed the partition
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Partition [" + fromIndex + ", " + toIndex + "): cost " + cost + " in "
+                    + String.format("%.1f", durationNanos / 1e6) + "ms on " + threadName;
+        }
+    }
 }
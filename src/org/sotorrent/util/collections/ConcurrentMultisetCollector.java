@@ -0,0 +1,73 @@
+package org.sotorrent.util.collections;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Counts elements like {@link MultisetCollector}, but all threads of a parallel stream accumulate into one
+ * concurrent map, such that no partial multisets need to be merged. Counts are {@link LongAdder}s, thus threads
+ * counting the same frequent element (e.g., a popular tag) do not contend on one counter.
+ * The map is converted to a multiset once in the finisher. Counts above Integer.MAX_VALUE (the maximum count of a
+ * multiset) are saturated, use {@link LongCountCollector} to count int or long keys exactly. Unlike
+ * {@link MultisetCollector}, null elements are rejected with a {@link NullPointerException}, because
+ * {@link ConcurrentHashMap} does not support null keys.
+ */
+public class ConcurrentMultisetCollector<T> implements Collector<T, ConcurrentMap<T, LongAdder>, Multiset<T>> {
+    public static <T> Collector<T, ConcurrentMap<T, LongAdder>, Multiset<T>> toConcurrentMultiset() {
+        return new ConcurrentMultisetCollector<>();
+    }
+
+    @Override
+    public Supplier<ConcurrentMap<T, LongAdder>> supplier() {
+        return ConcurrentHashMap::new;
+    }
+
+    @Override
+    public BiConsumer<ConcurrentMap<T, LongAdder>, T> accumulator() {
+        return (counts, element) -> {
+            Objects.requireNonNull(element, "Concurrent multisets do not support null elements.");
+            // get first, because computeIfAbsent locks the bin even if the element is present
+            LongAdder count = counts.get(element);
+            if (count == null) {
+                count = counts.computeIfAbsent(element, e -> new LongAdder());
+            }
+            count.increment();
+        };
+    }
+
+    @Override
+    public BinaryOperator<ConcurrentMap<T, LongAdder>> combiner() {
+        // not used by parallel streams, which share one map because the collector is concurrent and unordered
+        return (counts1, counts2) -> {
+            counts2.forEach((element, count) ->
+                    counts1.computeIfAbsent(element, e -> new LongAdder()).add(count.sum()));
+            return counts1;
+        };
+    }
+
+    @Override
+    public Function<ConcurrentMap<T, LongAdder>, Multiset<T>> finisher() {
+        return counts -> {
+            Multiset<T> multiset = HashMultiset.create(counts.size());
+            counts.forEach((element, count) -> multiset.setCount(element, (int) Math.min(Integer.MAX_VALUE, count.sum())));
+            return multiset;
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.of(Characteristics.CONCURRENT, Characteristics.UNORDERED);
+    }
+}
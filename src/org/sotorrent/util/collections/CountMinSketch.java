@@ -0,0 +1,104 @@
+package org.sotorrent.util.collections;
+
+import java.io.Serializable;
+
+/**
+ * Count-Min Sketch of 64-bit hashes with a fixed number of counters, independent of the number of distinct
+ * elements. Estimates are never smaller than the actual counts and, with probability 1 - delta, exceed them by at
+ * most epsilon * totalCount. Sketches with the same dimensions can be merged (e.g., partial results of parallel
+ * streams or of separate runs). Not thread-safe.
+ */
+public class CountMinSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int width;
+    private final int depth;
+    private final long[] counts; // depth rows of width counters
+    private long totalCount = 0;
+
+    /**
+     * @param epsilon relative error of the estimates (with respect to the total count)
+     * @param delta probability that an estimate exceeds the error bound
+     */
+    public CountMinSketch(double epsilon, double delta) {
+        this(widthFor(epsilon), depthFor(delta));
+    }
+
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1 || (long) width * depth > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid dimensions: " + width + "x" + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counts = new long[width * depth];
+    }
+
+    static int widthFor(double epsilon) {
+        if (!(epsilon > 0 && epsilon < 1)) {
+            throw new IllegalArgumentException("Epsilon must be between 0 and 1: " + epsilon);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(Math.E / epsilon));
+    }
+
+    static int depthFor(double delta) {
+        if (!(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("Delta must be between 0 and 1: " + delta);
+        }
+        return (int) Math.ceil(Math.log(1 / delta));
+    }
+
+    private int index(int row, long hash) {
+        // row hashes are derived from two halves of the hash (see Kirsch and Mitzenmacher)
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        int rowHash = hash1 + row * hash2;
+        return row * width + (rowHash & Integer.MAX_VALUE) % width;
+    }
+
+    /**
+     * @param hash well-distributed 64-bit hash of the element
+     */
+    public void add(long hash, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+        for (int row = 0; row < depth; row++) {
+            counts[index(row, hash)] += count;
+        }
+        totalCount += count;
+    }
+
+    /**
+     * @return upper bound of the count of the element with the given hash
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[index(row, hash)]);
+        }
+        return estimate;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches with different dimensions: "
+                    + width + "x" + depth + " and " + other.width + "x" + other.depth);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+}
@@ -0,0 +1,257 @@
+package org.sotorrent.util.collections;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approximate counts of the k most frequent elements (e.g., root domains of links) in bounded memory.
+ * Candidates are tracked with the Space-Saving algorithm (k counters, the counter with the minimum count is
+ * reassigned to new elements), which contains every element that occurs more than totalCount / k times.
+ * Both the Space-Saving counters and a {@link CountMinSketch} overestimate counts, the reported count is the
+ * minimum of both. Summaries are mergeable (see Agarwal et al., "Mergeable Summaries") if they use the same sketch
+ * dimensions and hasher. Not thread-safe.
+ */
+public class HeavyHitters<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 64-bit hash of an element, which must not depend on the JVM if summaries of separate runs are merged.
+     */
+    @FunctionalInterface
+    public interface Hasher<T> extends Serializable {
+        long hash(T element);
+    }
+
+    private final int k;
+    private final CountMinSketch sketch;
+    private final Hasher<? super T> hasher;
+    private final Map<T, Counter<T>> counters;
+    private final List<Counter<T>> heap; // min-heap of the counters by count
+
+    /**
+     * @param k number of tracked elements
+     * @param epsilon relative error of the sketch (see {@link CountMinSketch#CountMinSketch(double, double)})
+     */
+    public HeavyHitters(int k, double epsilon, double delta) {
+        this(k, epsilon, delta, HeavyHitters::hash);
+    }
+
+    public HeavyHitters(int k, double epsilon, double delta, Hasher<? super T> hasher) {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be positive: " + k);
+        }
+        this.k = k;
+        this.sketch = new CountMinSketch(epsilon, delta);
+        this.hasher = hasher;
+        this.counters = new HashMap<>(k * 2);
+        this.heap = new ArrayList<>(k);
+    }
+
+    /**
+     * Hash of the characters of char sequences (64-bit FNV-1a) or of the hash code of other elements, followed by
+     * the finalization step of MurmurHash3.
+     */
+    static long hash(Object element) {
+        long hash;
+        if (element instanceof CharSequence) {
+            CharSequence s = (CharSequence) element;
+            hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                hash = (hash ^ s.charAt(i)) * 0x100000001b3L;
+            }
+        } else {
+            hash = element.hashCode();
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public void add(T element) {
+        add(element, 1);
+    }
+
+    public void add(T element, long count) {
+        sketch.add(hasher.hash(element), count);
+
+        Counter<T> counter = counters.get(element);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.index);
+        } else if (heap.size() < k) {
+            counter = new Counter<>(element, count, 0);
+            counters.put(element, counter);
+            counter.index = heap.size();
+            heap.add(counter);
+            siftUp(counter.index);
+        } else {
+            // the new element may have occurred at most as often as the element with the minimum count
+            Counter<T> min = heap.get(0);
+            counters.remove(min.element);
+            min.element = element;
+            min.error = min.count;
+            min.count += count;
+            counters.put(element, min);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Merge the summary of another part of the stream (or of another run) into this summary.
+     */
+    public void merge(HeavyHitters<T> other) {
+        sketch.merge(other.sketch);
+
+        // elements that are not tracked by a full summary may have occurred as often as its minimum count
+        long min = minCount();
+        long otherMin = other.minCount();
+        Set<T> elements = new HashSet<>(counters.keySet());
+        elements.addAll(other.counters.keySet());
+        List<Counter<T>> merged = new ArrayList<>(elements.size());
+        for (T element : elements) {
+            Counter<T> counter = counters.get(element);
+            Counter<T> otherCounter = other.counters.get(element);
+            merged.add(new Counter<>(element,
+                    (counter != null ? counter.count : min) + (otherCounter != null ? otherCounter.count : otherMin),
+                    (counter != null ? counter.error : min) + (otherCounter != null ? otherCounter.error : otherMin)));
+        }
+        merged.sort(Comparator.comparingLong((Counter<T> counter) -> counter.count).reversed());
+
+        counters.clear();
+        heap.clear();
+        for (Counter<T> counter : merged.subList(0, Math.min(k, merged.size()))) {
+            counters.put(counter.element, counter);
+            counter.index = heap.size();
+            heap.add(counter);
+            siftUp(counter.index);
+        }
+    }
+
+    private long minCount() {
+        return heap.size() < k ? 0 : heap.get(0).count;
+    }
+
+    /**
+     * @return upper bound of the count of any element, tracked or not
+     */
+    public long estimateCount(T element) {
+        long estimate = sketch.estimate(hasher.hash(element));
+        Counter<T> counter = counters.get(element);
+        return counter != null ? Math.min(counter.count, estimate) : estimate;
+    }
+
+    /**
+     * @return tracked elements ordered by their estimated count, highest first
+     */
+    public List<Entry<T>> getTopK() {
+        List<Entry<T>> entries = new ArrayList<>(heap.size());
+        for (Counter<T> counter : heap) {
+            long count = Math.min(counter.count, sketch.estimate(hasher.hash(counter.element)));
+            entries.add(new Entry<>(counter.element, count, counter.count - counter.error));
+        }
+        entries.sort(Comparator.comparingLong((Entry<T> entry) -> entry.count).reversed());
+        return entries;
+    }
+
+    public long getTotalCount() {
+        return sketch.getTotalCount();
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    private void siftUp(int i) {
+        Counter<T> counter = heap.get(i);
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap.get(parent).count <= counter.count) {
+                break;
+            }
+            place(heap.get(parent), i);
+            i = parent;
+        }
+        place(counter, i);
+    }
+
+    private void siftDown(int i) {
+        Counter<T> counter = heap.get(i);
+        int size = heap.size();
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap.get(child + 1).count < heap.get(child).count) {
+                child++;
+            }
+            if (counter.count <= heap.get(child).count) {
+                break;
+            }
+            place(heap.get(child), i);
+            i = child;
+        }
+        place(counter, i);
+    }
+
+    private void place(Counter<T> counter, int i) {
+        heap.set(i, counter);
+        counter.index = i;
+    }
+
+    private static class Counter<T> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private T element;
+        private long count;
+        private long error; // count may exceed the actual count by at most error
+        private int index; // position in the heap
+
+        private Counter(T element, long count, long error) {
+            this.element = element;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    public static class Entry<T> {
+        private final T element;
+        private final long count;
+        private final long guaranteedCount;
+
+        private Entry(T element, long count, long guaranteedCount) {
+            this.element = element;
+            this.count = count;
+            this.guaranteedCount = guaranteedCount;
+        }
+
+        public T getElement() {
+            return element;
+        }
+
+        /**
+         * @return estimated count, which is an upper bound of the actual count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return lower bound of the actual count
+         */
+        public long getGuaranteedCount() {
+            return guaranteedCount;
+        }
+
+        @Override
+        public String toString() {
+            return element + "=" + count;
+        }
+    }
+}
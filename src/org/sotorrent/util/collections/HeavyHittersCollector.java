@@ -0,0 +1,58 @@
+package org.sotorrent.util.collections;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Approximate alternative to {@link MultisetCollector} for streams with too many distinct elements to count them
+ * exactly (see {@link HeavyHitters}).
+ */
+public class HeavyHittersCollector<T> implements Collector<T, HeavyHitters<T>, HeavyHitters<T>> {
+    private final Supplier<HeavyHitters<T>> supplier;
+
+    private HeavyHittersCollector(Supplier<HeavyHitters<T>> supplier) {
+        this.supplier = supplier;
+    }
+
+    public static <T> Collector<T, HeavyHitters<T>, HeavyHitters<T>> toHeavyHitters(int k, double epsilon, double delta) {
+        return new HeavyHittersCollector<>(() -> new HeavyHitters<>(k, epsilon, delta));
+    }
+
+    public static <T> Collector<T, HeavyHitters<T>, HeavyHitters<T>> toHeavyHitters(int k, double epsilon, double delta,
+                                                                              HeavyHitters.Hasher<? super T> hasher) {
+        return new HeavyHittersCollector<>(() -> new HeavyHitters<>(k, epsilon, delta, hasher));
+    }
+
+    @Override
+    public Supplier<HeavyHitters<T>> supplier() {
+        return supplier;
+    }
+
+    @Override
+    public BiConsumer<HeavyHitters<T>, T> accumulator() {
+        return HeavyHitters::add;
+    }
+
+    @Override
+    public BinaryOperator<HeavyHitters<T>> combiner() {
+        return (heavyHitters1, heavyHitters2) -> {
+            heavyHitters1.merge(heavyHitters2);
+            return heavyHitters1;
+        };
+    }
+
+    @Override
+    public Function<HeavyHitters<T>, HeavyHitters<T>> finisher() {
+        return Function.identity();
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.of(Characteristics.UNORDERED, Characteristics.IDENTITY_FINISH);
+    }
+}
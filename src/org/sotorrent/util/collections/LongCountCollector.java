@@ -0,0 +1,78 @@
+package org.sotorrent.util.collections;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Counts primitive int or long keys (e.g., tag ids or post ids) in a {@link LongLongHashMap}, such that neither
+ * keys nor counts are boxed. Partial maps of parallel streams are merged by adding the smaller map to the larger one.
+ */
+public class LongCountCollector<T> implements Collector<T, LongLongHashMap, LongLongHashMap> {
+    private final ToLongFunction<? super T> keyMapper;
+
+    private LongCountCollector(ToLongFunction<? super T> keyMapper) {
+        this.keyMapper = keyMapper;
+    }
+
+    /**
+     * @param keyMapper e.g., Post::getId (int keys are widened to long), null elements are rejected with a
+     *                  {@link NullPointerException} instead of being passed to the key mapper
+     */
+    public static <T> Collector<T, LongLongHashMap, LongLongHashMap> toLongCounts(ToLongFunction<? super T> keyMapper) {
+        return new LongCountCollector<>(keyMapper);
+    }
+
+    public static LongLongHashMap count(IntStream keys) {
+        return keys.collect(LongLongHashMap::new, (counts, key) -> counts.addTo(key, 1), LongCountCollector::merge);
+    }
+
+    public static LongLongHashMap count(LongStream keys) {
+        return keys.collect(LongLongHashMap::new, (counts, key) -> counts.addTo(key, 1), LongCountCollector::merge);
+    }
+
+    private static LongLongHashMap merge(LongLongHashMap counts1, LongLongHashMap counts2) {
+        if (counts1.size() < counts2.size()) {
+            counts2.addAll(counts1);
+            return counts2;
+        }
+        counts1.addAll(counts2);
+        return counts1;
+    }
+
+    @Override
+    public Supplier<LongLongHashMap> supplier() {
+        return LongLongHashMap::new;
+    }
+
+    @Override
+    public BiConsumer<LongLongHashMap, T> accumulator() {
+        return (counts, element) -> {
+            Objects.requireNonNull(element, "Long counts do not support null elements.");
+            counts.addTo(keyMapper.applyAsLong(element), 1);
+        };
+    }
+
+    @Override
+    public BinaryOperator<LongLongHashMap> combiner() {
+        return LongCountCollector::merge;
+    }
+
+    @Override
+    public Function<LongLongHashMap, LongLongHashMap> finisher() {
+        return Function.identity();
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.of(Characteristics.UNORDERED, Characteristics.IDENTITY_FINISH);
+    }
+}
@@ -0,0 +1,164 @@
+package org.sotorrent.util.collections;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of primitive long values (e.g., URL fingerprints) using open addressing with linear probing.
+ * Needs 8 bytes per slot (at most 4/3 slots per element) instead of a boxed entry per element like HashSet.
+ * The set holds at most MAXIMUM_SIZE (about 805 million) elements, use {@link ShardedLongHashSet} for more.
+ * Not thread-safe.
+ */
+public class LongHashSet {
+    static final float LOAD_FACTOR = 0.75f;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+    public static final int MAXIMUM_SIZE = (int) (MAXIMUM_CAPACITY * LOAD_FACTOR);
+
+    private long[] keys; // 0 marks empty slots, the key 0 is stored in containsZero
+    private boolean containsZero = false;
+    private int size = 0;
+    private int threshold;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        this.keys = new long[capacity];
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    static int capacityFor(int expectedSize) {
+        long capacity = Long.highestOneBit(Math.max(2, (long) Math.ceil(expectedSize / (double) LOAD_FACTOR)) - 1) << 1;
+        if (capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Expected size too large: " + expectedSize + " (maximum size: " + MAXIMUM_SIZE + ")");
+        }
+        return (int) capacity;
+    }
+
+    static int hash(long key) {
+        return (int) mix(key);
+    }
+
+    static long mix(long key) {
+        // finalization step of MurmurHash3 (64 bit), keys do not need to be uniformly distributed
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    static void checkSize(int size) {
+        // checked before inserting, such that the set remains usable
+        if (size >= MAXIMUM_SIZE) {
+            throw new IllegalStateException("Maximum size of " + MAXIMUM_SIZE
+                    + " elements reached, use ShardedLongHashSet or ShardedLongLongHashMap for more elements.");
+        }
+    }
+
+    /**
+     * @return true if the set did not already contain the key
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            checkSize(size);
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        long slotKey;
+        while ((slotKey = keys[i]) != 0) {
+            if (slotKey == key) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        checkSize(size);
+        keys[i] = key;
+        if (++size > threshold) {
+            resize();
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        long slotKey;
+        while ((slotKey = keys[i]) != 0) {
+            if (slotKey == key) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length * 2];
+        threshold = (int) (keys.length * LOAD_FACTOR);
+        int mask = keys.length - 1;
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int i = hash(key) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        if (containsZero) {
+            consumer.accept(0);
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                consumer.accept(key);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] result = new long[size];
+        int index = 0;
+        if (containsZero) {
+            result[index++] = 0;
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                result[index++] = key;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,164 @@
+package org.sotorrent.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive long keys to primitive long values (e.g., URL fingerprints to link counts) using open
+ * addressing with linear probing. Needs 16 bytes per slot (at most 4/3 slots per entry) and does not box.
+ * The map holds at most {@link LongHashSet#MAXIMUM_SIZE} (about 805 million) entries, use
+ * {@link ShardedLongLongHashMap} for more.
+ * Not thread-safe.
+ */
+public class LongLongHashMap {
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    private long[] keys; // 0 marks empty slots, the value of key 0 is stored in zeroValue
+    private long[] values;
+    private boolean containsZero = false;
+    private long zeroValue = 0;
+    private int size = 0;
+    private int threshold;
+
+    public LongLongHashMap() {
+        this(16);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        int capacity = LongHashSet.capacityFor(expectedSize);
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.threshold = (int) (capacity * LongHashSet.LOAD_FACTOR);
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = LongHashSet.hash(key) & mask;
+        long slotKey;
+        while ((slotKey = keys[i]) != 0) {
+            if (slotKey == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -(i + 1); // insertion point
+    }
+
+    public boolean containsKey(long key) {
+        return key == 0 ? containsZero : indexOf(key) >= 0;
+    }
+
+    public long get(long key, long defaultValue) {
+        if (key == 0) {
+            return containsZero ? zeroValue : defaultValue;
+        }
+        int i = indexOf(key);
+        return i >= 0 ? values[i] : defaultValue;
+    }
+
+    public void put(long key, long value) {
+        if (key == 0) {
+            if (!containsZero) {
+                LongHashSet.checkSize(size);
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        insert(-(i + 1), key, value);
+    }
+
+    /**
+     * Add delta to the value of key, missing keys start with value 0 (e.g., for counting).
+     * @return the new value
+     */
+    public long addTo(long key, long delta) {
+        if (key == 0) {
+            if (!containsZero) {
+                LongHashSet.checkSize(size);
+                containsZero = true;
+                size++;
+            }
+            return zeroValue += delta;
+        }
+
+        int i = indexOf(key);
+        if (i >= 0) {
+            return values[i] += delta;
+        }
+        insert(-(i + 1), key, delta);
+        return delta;
+    }
+
+    /**
+     * Add the values of other to the values of this map (e.g., to merge counts).
+     */
+    public void addAll(LongLongHashMap other) {
+        other.forEach(this::addTo);
+    }
+
+    private void insert(int i, long key, long value) {
+        LongHashSet.checkSize(size);
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) {
+            resize();
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        threshold = (int) (keys.length * LongHashSet.LOAD_FACTOR);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key != 0) {
+                int i = LongHashSet.hash(key) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        if (containsZero) {
+            consumer.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        containsZero = false;
+        zeroValue = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,75 @@
+package org.sotorrent.util.collections;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Set of primitive long values for more elements than a single {@link LongHashSet} can hold (e.g., deduplicating
+ * billions of URL fingerprints). Elements are distributed over SHARD_COUNT sets by the high bits of their hash, thus
+ * the set holds up to SHARD_COUNT * LongHashSet.MAXIMUM_SIZE (about 51 billion) elements and each shard is resized
+ * on its own. Not thread-safe.
+ */
+public class ShardedLongHashSet {
+    static final int SHARD_BITS = 6;
+    public static final int SHARD_COUNT = 1 << SHARD_BITS;
+
+    private final LongHashSet[] shards = new LongHashSet[SHARD_COUNT];
+
+    public ShardedLongHashSet() {
+        this(0);
+    }
+
+    public ShardedLongHashSet(long expectedSize) {
+        int expectedShardSize = shardSizeFor(expectedSize);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new LongHashSet(expectedShardSize);
+        }
+    }
+
+    static int shardSizeFor(long expectedSize) {
+        long expectedShardSize = (expectedSize + SHARD_COUNT - 1) / SHARD_COUNT;
+        if (expectedShardSize > LongHashSet.MAXIMUM_SIZE) {
+            throw new IllegalArgumentException("Expected size too large: " + expectedSize);
+        }
+        return (int) expectedShardSize;
+    }
+
+    static int shardIndex(long key) {
+        // shards use the low bits of the same hash for their slots
+        return (int) (LongHashSet.mix(key) >>> (Long.SIZE - SHARD_BITS));
+    }
+
+    /**
+     * @return true if the set did not already contain the key
+     */
+    public boolean add(long key) {
+        return shards[shardIndex(key)].add(key);
+    }
+
+    public boolean contains(long key) {
+        return shards[shardIndex(key)].contains(key);
+    }
+
+    public void forEach(LongConsumer consumer) {
+        for (LongHashSet shard : shards) {
+            shard.forEach(consumer);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (LongHashSet shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (LongHashSet shard : shards) {
+            shard.clear();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.sotorrent.util.collections;
+
+/**
+ * Map from primitive long keys to primitive long values for more entries than a single {@link LongLongHashMap} can
+ * hold (see {@link ShardedLongHashSet}). Not thread-safe.
+ */
+public class ShardedLongLongHashMap {
+    private final LongLongHashMap[] shards = new LongLongHashMap[ShardedLongHashSet.SHARD_COUNT];
+
+    public ShardedLongLongHashMap() {
+        this(0);
+    }
+
+    public ShardedLongLongHashMap(long expectedSize) {
+        int expectedShardSize = ShardedLongHashSet.shardSizeFor(expectedSize);
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LongLongHashMap(expectedShardSize);
+        }
+    }
+
+    private LongLongHashMap shard(long key) {
+        return shards[ShardedLongHashSet.shardIndex(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return shard(key).containsKey(key);
+    }
+
+    public long get(long key, long defaultValue) {
+        return shard(key).get(key, defaultValue);
+    }
+
+    public void put(long key, long value) {
+        shard(key).put(key, value);
+    }
+
+    /**
+     * Add delta to the value of key, missing keys start with value 0 (e.g., for counting).
+     * @return the new value
+     */
+    public long addTo(long key, long delta) {
+        return shard(key).addTo(key, delta);
+    }
+
+    public void forEach(LongLongHashMap.EntryConsumer consumer) {
+        for (LongLongHashMap shard : shards) {
+            shard.forEach(consumer);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (LongLongHashMap shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (LongLongHashMap shard : shards) {
+            shard.clear();
+        }
+    }
+}
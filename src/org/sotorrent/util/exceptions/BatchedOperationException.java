@@ -0,0 +1,37 @@
+package org.sotorrent.util.exceptions;
+
+import org.sotorrent.util.HibernateUtils.ChunkStatistics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown if a chunk of a batched insert or update fails. The previous chunks have been committed, thus the operation
+ * can be resumed with the elements starting at {@link #getCommittedCount()}.
+ */
+public class BatchedOperationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int committedCount;
+    private final List<ChunkStatistics> statistics;
+
+    public BatchedOperationException(int committedCount, List<ChunkStatistics> statistics, Throwable cause) {
+        super("Chunk " + statistics.size() + " failed after " + committedCount + " elements had been committed.", cause);
+        this.committedCount = committedCount;
+        this.statistics = Collections.unmodifiableList(statistics);
+    }
+
+    /**
+     * @return number of elements committed before the failed chunk, i.e., the index of its first element
+     */
+    public int getCommittedCount() {
+        return committedCount;
+    }
+
+    /**
+     * @return one entry per committed chunk
+     */
+    public List<ChunkStatistics> getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,30 @@
+package org.sotorrent.util.exceptions;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown after all files have been processed if some files or directories could not be processed.
+ */
+public class FileProcessingException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_SUPPRESSED = 10;
+
+    private final transient Map<Path, Exception> failures; // Path is not serializable, see suppressed exceptions
+
+    public FileProcessingException(Map<Path, Exception> failures) {
+        super(failures.size() + " files or directories could not be processed, first: "
+                + failures.keySet().iterator().next());
+        this.failures = Collections.unmodifiableMap(failures);
+        failures.values().stream().limit(MAX_SUPPRESSED).forEach(this::addSuppressed);
+    }
+
+    /**
+     * @return failed files and directories in the order in which they failed, empty if the exception has been
+     * deserialized
+     */
+    public Map<Path, Exception> getFailures() {
+        return failures == null ? Collections.emptyMap() : failures;
+    }
+}
@@ -0,0 +1,15 @@
+package org.sotorrent.util.exceptions;
+
+public class WriteBehindException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public WriteBehindException() { }
+
+    public WriteBehindException(String message) {
+        super(message);
+    }
+
+    public WriteBehindException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,134 @@
+import com.google.common.collect.Multiset;
+import org.junit.jupiter.api.Test;
+import org.sotorrent.util.collections.CollectionUtils;
+import org.sotorrent.util.collections.ConcurrentMultisetCollector;
+import org.sotorrent.util.collections.HeavyHitters;
+import org.sotorrent.util.collections.HeavyHittersCollector;
+import org.sotorrent.util.collections.LongCountCollector;
+import org.sotorrent.util.collections.LongLongHashMap;
+import org.sotorrent.util.collections.MultisetCollector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectionUtilsTest {
+    @Test
+    void testCountingCollectors() {
+        Multiset<Integer> expected = IntStream.range(0, 100000).boxed()
+                .map(i -> i % 97)
+                .collect(MultisetCollector.toMultiset());
+        Multiset<Integer> concurrent = IntStream.range(0, 100000).boxed().parallel()
+                .map(i -> i % 97)
+                .collect(ConcurrentMultisetCollector.toConcurrentMultiset());
+        assertEquals(expected, concurrent);
+        assertEquals(1031, concurrent.count(0));
+
+        LongLongHashMap intCounts = LongCountCollector.count(IntStream.range(0, 100000).parallel().map(i -> i % 97));
+        LongLongHashMap longCounts = LongCountCollector.count(LongStream.range(0, 100000).map(i -> (i % 97) << 40));
+        LongLongHashMap mappedCounts = IntStream.range(0, 100000).boxed().parallel()
+                .collect(LongCountCollector.toLongCounts(i -> i % 97));
+        assertEquals(97, intCounts.size());
+        assertEquals(97, longCounts.size());
+        assertEquals(97, mappedCounts.size());
+        for (int key = 0; key < 97; key++) {
+            assertEquals(expected.count(key), intCounts.get(key, 0));
+            assertEquals(expected.count(key), longCounts.get((long) key << 40, 0));
+            assertEquals(expected.count(key), mappedCounts.get(key, 0));
+        }
+
+        // null elements are rejected with a clear message
+        List<Integer> withNull = Arrays.asList(1, null, 2);
+        NullPointerException exception = assertThrows(NullPointerException.class,
+                () -> withNull.stream().collect(ConcurrentMultisetCollector.toConcurrentMultiset()));
+        assertTrue(exception.getMessage().contains("null elements"));
+        exception = assertThrows(NullPointerException.class,
+                () -> withNull.stream().collect(LongCountCollector.toLongCounts(i -> i)));
+        assertTrue(exception.getMessage().contains("null elements"));
+    }
+
+    @Test
+    void testHeavyHitters() throws IOException, ClassNotFoundException {
+        // domain i occurs about 10000 / (i + 1) times
+        List<String> domains = IntStream.range(0, 5000)
+                .boxed()
+                .flatMap(i -> IntStream.range(0, Math.max(1, 10000 / (i + 1))).mapToObj(j -> "domain" + i + ".com"))
+                .collect(Collectors.toList());
+        Multiset<String> exact = domains.stream().collect(MultisetCollector.toMultiset());
+        HeavyHitters<String> heavyHitters = domains.parallelStream()
+                .collect(HeavyHittersCollector.toHeavyHitters(50, 0.001, 0.01));
+        assertEquals(domains.size(), heavyHitters.getTotalCount());
+
+        List<HeavyHitters.Entry<String>> topK = heavyHitters.getTopK();
+        assertEquals(50, topK.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("domain" + i + ".com", topK.get(i).getElement());
+        }
+        for (HeavyHitters.Entry<String> entry : topK) {
+            long count = exact.count(entry.getElement());
+            assertTrue(entry.getGuaranteedCount() <= count);
+            assertTrue(entry.getCount() >= count);
+            assertTrue(entry.getCount() - count <= 0.001 * domains.size(), entry.toString());
+        }
+
+        // merge with the summary of a separate run
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(heavyHitters);
+        }
+        @SuppressWarnings("unchecked")
+        HeavyHitters<String> previousRun = (HeavyHitters<String>) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        previousRun.merge(heavyHitters);
+        assertEquals(2L * domains.size(), previousRun.getTotalCount());
+        assertEquals("domain0.com", previousRun.getTopK().get(0).getElement());
+        assertTrue(previousRun.getTopK().get(0).getCount() >= 2 * 10000);
+        assertTrue(previousRun.estimateCount("domain1.com") >= 2 * 5000);
+    }
+
+    @Test
+    void testCostBalancedPartitions() {
+        // one element as expensive as all others together
+        List<Integer> costs = IntStream.range(0, 1000).mapToObj(i -> i == 10 ? 999 : 1).collect(Collectors.toList());
+        List<List<Integer>> partitions = CollectionUtils.splitByCost(costs, Integer::longValue, 4);
+        assertEquals(4, partitions.size());
+        assertEquals(List.of(999), partitions.get(1));
+        assertEquals(costs.size(), partitions.stream().mapToInt(List::size).sum());
+        assertEquals(1, CollectionUtils.splitByCost(List.of(1), Integer::longValue, 4).size());
+
+        @SuppressWarnings("deprecation")
+        List<Integer>[] subLists = CollectionUtils.split(List.of(1, 2), 4);
+        assertEquals(0, subLists[3].size());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LongAdder processedCost = new LongAdder();
+            List<CollectionUtils.PartitionStatistics> statistics = CollectionUtils.forEachBalanced(pool, costs,
+                    Integer::longValue, cost -> processedCost.add(cost));
+            assertEquals(1998, processedCost.sum());
+            assertEquals(0, statistics.get(0).getFromIndex());
+            assertEquals(costs.size(), statistics.get(statistics.size() - 1).getToIndex());
+            for (int i = 1; i < statistics.size(); i++) {
+                assertEquals(statistics.get(i - 1).getToIndex(), statistics.get(i).getFromIndex());
+            }
+            assertTrue(statistics.stream().anyMatch(partition -> partition.getElementCount() == 1
+                    && partition.getCost() == 999));
+            assertTrue(statistics.stream().allMatch(partition -> partition.getCost() <= 1998 / 16
+                    || partition.getElementCount() == 1));
+            assertTrue(CollectionUtils.forEachBalanced(pool, List.<Integer>of(), Integer::longValue, i -> {}).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sotorrent.util.FileUtils;
+import org.sotorrent.util.LineChunk;
+import org.sotorrent.util.exceptions.FileProcessingException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUtilsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testProcessFilesInParallel() throws IOException, InterruptedException {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Path subDir = Files.createDirectories(dir.resolve("dir" + i).resolve("nested"));
+            for (int j = 0; j < 20; j++) {
+                String content = i + "-" + j;
+                Files.writeString(subDir.resolve(String.format("file%02d.txt", j)), content);
+                expected.add(content);
+            }
+            Files.writeString(subDir.resolve("ignored.csv"), "ignored");
+        }
+
+        List<String> ordered = new ArrayList<>();
+        long count = FileUtils.processFiles(dir, file -> file.toString().endsWith(".txt"), file -> {
+            Thread.sleep((long) (Math.random() * 5)); // complete out of order
+            return Files.readString(file);
+        }, ordered::add, 4, FileUtils.ResultOrder.ORDERED);
+        assertEquals(100, count);
+        assertEquals(expected, ordered);
+
+        Set<String> unordered = new HashSet<>();
+        FileUtils.processFiles(dir, file -> file.toString().endsWith(".txt"), Files::readString, unordered::add,
+                4, FileUtils.ResultOrder.UNORDERED);
+        assertEquals(new HashSet<>(expected), unordered);
+
+        // failed files are reported after all other files have been processed
+        List<String> results = new ArrayList<>();
+        FileProcessingException e = assertThrows(FileProcessingException.class,
+                () -> FileUtils.processFiles(dir, file -> true, file -> {
+                    String content = Files.readString(file);
+                    if (content.equals("ignored")) {
+                        throw new IOException("Unexpected content: " + file);
+                    }
+                    return content;
+                }, results::add, 4, FileUtils.ResultOrder.ORDERED));
+        assertEquals(expected, results);
+        assertEquals(5, e.getFailures().size());
+        assertTrue(e.getFailures().keySet().stream().allMatch(file -> file.endsWith("ignored.csv")));
+        assertEquals(5, e.getSuppressed().length);
+    }
+
+    @Test
+    void testProcessLinesInParallel() throws IOException, InterruptedException {
+        StringBuilder content = new StringBuilder("\uFEFF");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            String line = i % 100 == 0 ? "" : "<row Id=\"" + i + "\" Body=\"äö€\uD83D\uDE00\" />";
+            expected.add(line);
+            content.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        content.append("last line without newline");
+        expected.add("last line without newline");
+        Path file = dir.resolve("Posts.xml");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+
+        List<List<String>> lines = FileUtils.processLines(file, 7, chunk -> {
+            List<String> chunkLines = new ArrayList<>();
+            chunk.forEachDecodedLine(line -> chunkLines.add(line.toString()));
+            return chunkLines;
+        });
+        assertEquals(7, lines.size());
+        assertEquals(expected, lines.stream().flatMap(List::stream).collect(Collectors.toList()));
+
+        List<LineChunk> chunks = FileUtils.processLines(file, 3, chunk -> chunk);
+        assertEquals(3, chunks.get(0).getStart());
+        assertEquals(Files.size(file), chunks.get(2).getEnd());
+        assertEquals(expected.size(), chunks.stream().mapToLong(chunk -> chunk.forEachLine(line -> {})).sum());
+
+        Path empty = Files.createFile(dir.resolve("empty.csv"));
+        assertTrue(FileUtils.processLines(empty, 4, chunk -> chunk).isEmpty());
+    }
+}
@@ -0,0 +1,216 @@
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sotorrent.util.HibernateUtils;
+import org.sotorrent.util.WriteBehindWriter;
+import org.sotorrent.util.exceptions.BatchedOperationException;
+import org.sotorrent.util.exceptions.WriteBehindException;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HibernateUtilsTest {
+    private SessionFactory sessionFactory;
+
+    @Entity
+    @Table(name = "TestLink")
+    public static class TestLink {
+        @Id
+        private int id;
+        private String url;
+
+        public TestLink() { }
+
+        TestLink(int id, String url) {
+            this.id = id;
+            this.url = url;
+        }
+
+        int getId() {
+            return id;
+        }
+    }
+
+    @BeforeEach
+    void createSessionFactory() {
+        sessionFactory = new Configuration()
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.generate_statistics", "true")
+                .addAnnotatedClass(TestLink.class)
+                .buildSessionFactory();
+    }
+
+    @AfterEach
+    void closeSessionFactory() {
+        sessionFactory.close();
+    }
+
+    private static List<TestLink> createLinks(int count, String prefix) {
+        List<TestLink> links = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            links.add(new TestLink(i, prefix + i));
+        }
+        return links;
+    }
+
+    private long countRows(String url) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return session.createQuery("select count(*) from HibernateUtilsTest$TestLink where url like :url", Long.class)
+                    .setParameter("url", url)
+                    .uniqueResult();
+        }
+    }
+
+    @Test
+    void testBatchedInsertAndUpdate() {
+        Statistics statistics = sessionFactory.getStatistics();
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            List<HibernateUtils.ChunkStatistics> chunks = HibernateUtils.insertListBatched(session,
+                    createLinks(1050, "http://example.com/"), 100, 500);
+            assertEquals(3, chunks.size());
+            assertEquals(500, chunks.get(0).getRowCount());
+            assertEquals(50, chunks.get(2).getRowCount());
+            // one statement per batch instead of one per row
+            assertTrue(statistics.getPrepareStatementCount() <= 12, "statements: " + statistics.getPrepareStatementCount());
+
+            chunks = HibernateUtils.updateListBatched(session, createLinks(1050, "https://example.com/"), 100, 2000);
+            assertEquals(1, chunks.size());
+            assertEquals(1050, chunks.get(0).getRowCount());
+        }
+        assertEquals(1050, countRows("https://%"));
+        assertEquals(0, countRows("http://%"));
+    }
+
+    @Test
+    void testBatchedInsertFailure() {
+        List<TestLink> links = createLinks(1050, "https://example.com/");
+        links.set(700, new TestLink(0, "duplicate id"));
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            BatchedOperationException exception = assertThrows(BatchedOperationException.class,
+                    () -> HibernateUtils.insertListBatched(session, links, 100, 500));
+            assertEquals(500, exception.getCommittedCount());
+            assertEquals(1, exception.getStatistics().size());
+            assertFalse(session.getTransaction().isActive());
+
+            // resume after the committed chunks
+            links.set(700, new TestLink(700, "https://example.com/700"));
+            HibernateUtils.insertListBatched(session, links.subList(exception.getCommittedCount(), links.size()), 100, 500);
+        }
+        assertEquals(1050, countRows("https://%"));
+    }
+
+    @Test
+    void testWriteBehindWriter() throws InterruptedException {
+        try (WriteBehindWriter writer = new WriteBehindWriter(sessionFactory, 3, 100, 50)) {
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                int producer = p;
+                producers.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 2500; i++) {
+                            writer.add(new TestLink(producer * 2500 + i, "https://example.com/" + i));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            producers.forEach(Thread::start);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            writer.flush();
+            assertEquals(0, writer.getPendingCount());
+            assertEquals(10000, countRows("https://%"));
+            writer.awaitTermination();
+            assertThrows(IllegalStateException.class, () -> writer.add(new TestLink(10000, "https://example.com/")));
+        }
+
+        // errors are propagated to the producer
+        WriteBehindWriter writer = new WriteBehindWriter(sessionFactory, 2, 100, 50);
+        writer.add(new TestLink(0, "duplicate id"));
+        assertThrows(WriteBehindException.class, writer::flush);
+        assertThrows(WriteBehindException.class, () -> writer.add(new TestLink(10001, "https://example.com/")));
+        assertThrows(WriteBehindException.class, writer::close);
+    }
+
+    @Test
+    void testStreamChunks() {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            HibernateUtils.insertListBatched(session, createLinks(1050, "https://example.com/"), 100, 1000);
+
+            for (boolean prefetch : new boolean[] {false, true}) {
+                List<Integer> chunkSizes = new ArrayList<>();
+                List<Integer> ids = new ArrayList<>();
+                HibernateUtils.forEachChunk(session, TestLink.class, "id", TestLink::getId, 100, prefetch, chunk -> {
+                    chunkSizes.add(chunk.size());
+                    chunk.forEach(link -> ids.add(link.getId()));
+                });
+                assertEquals(11, chunkSizes.size());
+                assertEquals(50, chunkSizes.get(10));
+                assertEquals(1050, ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    assertEquals(i, ids.get(i));
+                }
+            }
+
+            // closing a partially consumed stream stops prefetching
+            try (Stream<List<TestLink>> chunks = HibernateUtils.streamChunks(session, TestLink.class, "id",
+                    TestLink::getId, 1000, true)) {
+                assertEquals(1000, chunks.limit(1).collect(Collectors.toList()).get(0).size());
+            }
+            assertEquals(1, HibernateUtils.streamChunks(session, TestLink.class, "id", TestLink::getId, 1050, false).count());
+        }
+    }
+
+    @Test
+    void testListByIds() {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            HibernateUtils.insertListBatched(session, createLinks(3000, "https://example.com/"), 500, 3000);
+            String hql = "from HibernateUtilsTest$TestLink l where l.id in (:ids)";
+
+            assertTrue(HibernateUtils.listByIds(session, hql, TestLink.class, "ids", new int[0]).isEmpty());
+
+            List<TestLink> links = HibernateUtils.listByIds(session, hql, TestLink.class, "ids", new int[] {5, 3, 5, 4000});
+            assertEquals(2, links.size());
+
+            // more ids than fit into one IN list, including duplicates and missing ids
+            int[] ids = new int[5000];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = (i * 7) % 5000;
+            }
+            Statistics statistics = sessionFactory.getStatistics();
+            statistics.clear();
+            links = HibernateUtils.listByIds(session, hql, TestLink.class, "ids", ids);
+            assertEquals(3000, links.size());
+            assertEquals(3000, links.stream().mapToInt(TestLink::getId).distinct().count());
+            // at most two distinct query plans (full chunks and the padded last chunk)
+            assertTrue(statistics.getQueryPlanCacheMissCount() <= 2, "plans: " + statistics.getQueryPlanCacheMissCount());
+
+            List<Integer> chunkSizes = new ArrayList<>();
+            HibernateUtils.forEachChunkByIds(session, "select l.id from HibernateUtilsTest$TestLink l where l.id in (:ids)",
+                    Integer.class, "ids", new int[] {1, 2, 3}, chunk -> chunkSizes.add(chunk.size()));
+            assertEquals(Collections.singletonList(3), chunkSizes);
+
+            // further parameters are bound for each chunk
+            links = HibernateUtils.listByIds(session, hql + " and l.url like :url", TestLink.class, "ids", ids,
+                    query -> query.setParameter("url", "%/1%"));
+            assertEquals(1111, links.size());
+        }
+    }
+}
@@ -0,0 +1,400 @@
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.sotorrent.util.AsyncHttpClient;
+import org.sotorrent.util.HostRateLimiter;
+import org.sotorrent.util.HttpUtils;
+import org.sotorrent.util.LinkStatus;
+import org.sotorrent.util.LinkStatusStore;
+import org.sotorrent.util.RedirectResolver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpUtilsTest {
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger runningHandlers = new AtomicInteger(0);
+    private final AtomicInteger maxRunningHandlers = new AtomicInteger(0);
+    private final AtomicInteger throttledRequests = new AtomicInteger(0);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/ok", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/moved", exchange -> {
+            exchange.getResponseHeaders().add("Location", baseUrl + "/ok");
+            exchange.sendResponseHeaders(301, -1);
+            exchange.close();
+        });
+        server.createContext("/limited", exchange -> {
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+        });
+        server.createContext("/throttled", exchange -> {
+            // throttle the first request to localhost
+            if (exchange.getRequestHeaders().getFirst("Host").startsWith("localhost")
+                    && throttledRequests.incrementAndGet() == 1) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.sendResponseHeaders(429, -1);
+            } else {
+                exchange.sendResponseHeaders(200, -1);
+            }
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            int running = runningHandlers.incrementAndGet();
+            maxRunningHandlers.accumulateAndGet(running, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            runningHandlers.decrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void testAsyncHttpClient() throws ExecutionException, InterruptedException {
+        AsyncHttpClient client = new AsyncHttpClient(4, false, 1000, 5000);
+
+        HttpResponse<Void> response = client.send(baseUrl + "/ok", "HEAD").get();
+        assertTrue(HttpUtils.success(response));
+        assertFalse(HttpUtils.redirect(response));
+
+        response = client.send(baseUrl + "/moved", "GET").get();
+        assertTrue(HttpUtils.redirect(response));
+        assertEquals(baseUrl + "/ok", response.headers().firstValue("Location").orElse(null));
+
+        response = client.send(baseUrl + "/limited", "GET").get();
+        assertTrue(HttpUtils.tooManyRequests(response));
+        assertFalse(HttpUtils.success(response));
+
+        AsyncHttpClient followingClient = new AsyncHttpClient(4, true, 1000, 5000);
+        response = followingClient.send(baseUrl + "/moved", "GET").get();
+        assertTrue(HttpUtils.success(response));
+        assertEquals(baseUrl + "/ok", response.uri().toString());
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> client.send("ftp://127.0.0.1/", "GET").get());
+        assertTrue(exception.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void testAsyncHttpClientConcurrencyLimit() {
+        AsyncHttpClient client = new AsyncHttpClient(2, false, 1000, 5000);
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            responses.add(client.send(baseUrl + "/slow", "GET"));
+        }
+        assertTrue(client.getRunningRequestCount() <= 2);
+
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).join();
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            assertTrue(HttpUtils.success(response.join()));
+        }
+        assertTrue(maxRunningHandlers.get() <= 2);
+        assertEquals(0, client.getRunningRequestCount());
+        assertEquals(0, client.getQueuedRequestCount());
+    }
+
+    @Test
+    @Timeout(30)
+    void testAsyncHttpClientBackpressure() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        server.createContext("/blocked", exchange -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+
+        // one running and one queued request, further requests block the producer
+        AsyncHttpClient client = new AsyncHttpClient(1, 1, false, 1000, 5000);
+        List<CompletableFuture<HttpResponse<Void>>> responses = new CopyOnWriteArrayList<>();
+        responses.add(client.send(baseUrl + "/blocked", "GET"));
+        responses.add(client.send(baseUrl + "/blocked", "GET"));
+        Thread producer = new Thread(() -> responses.add(client.send(baseUrl + "/blocked", "GET")));
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, responses.size());
+        assertEquals(1, client.getQueuedRequestCount());
+
+        release.countDown();
+        producer.join();
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            assertTrue(HttpUtils.success(response.join()));
+        }
+        assertEquals(0, client.getQueuedRequestCount());
+    }
+
+    @Test
+    @Timeout(30)
+    void testRetryAfterConnectionReset() throws IOException, InterruptedException, ExecutionException {
+        // server that resets the connection of the first GET request and of all POST requests in the middle of the
+        // response
+        AtomicInteger getRequests = new AtomicInteger(0);
+        AtomicInteger postRequests = new AtomicInteger(0);
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread serverThread = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try (Socket socket = serverSocket.accept()) {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                        String requestLine = reader.readLine();
+                        if (requestLine == null) {
+                            continue;
+                        }
+                        boolean reset;
+                        if (requestLine.startsWith("POST")) {
+                            postRequests.incrementAndGet();
+                            reset = true;
+                        } else {
+                            reset = getRequests.incrementAndGet() == 1;
+                        }
+                        String line;
+                        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                            // skip request headers
+                        }
+                        if (reset) {
+                            // a partial response is not retried by HttpClient itself
+                            socket.getOutputStream().write("HTTP/1.1 200".getBytes(StandardCharsets.US_ASCII));
+                            socket.getOutputStream().flush();
+                            socket.setSoLinger(true, 0); // send RST on close
+                            continue;
+                        }
+                        socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                                .getBytes(StandardCharsets.US_ASCII));
+                    } catch (IOException e) {
+                        // server socket closed
+                    }
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            AsyncHttpClient client = new AsyncHttpClient(4, false, 1000, 5000);
+            String url = "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+            assertTrue(HttpUtils.success(client.send(url, "GET").get()));
+            assertEquals(2, getRequests.get());
+
+            // requests that are not idempotent are not retried
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> client.send(url, "POST").get());
+            assertTrue(exception.getCause() instanceof IOException);
+            assertEquals(1, postRequests.get());
+            assertEquals(0, client.getRunningRequestCount());
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void testHostRateLimiter() throws ExecutionException, InterruptedException {
+        String throttledHostUrl = baseUrl.replace("127.0.0.1", "localhost");
+        AsyncHttpClient client = new AsyncHttpClient(8, false, 1000, 5000);
+        try (HostRateLimiter limiter = new HostRateLimiter(client, 1000, 20, 2)) {
+            CompletableFuture<HttpResponse<Void>> throttledResponse = limiter.send(throttledHostUrl + "/throttled", "GET");
+            while (throttledRequests.get() == 0 || limiter.getQueuedRequestCount() == 0) {
+                Thread.sleep(10); // wait until the request has been throttled and queued for retry
+            }
+            CompletableFuture<HttpResponse<Void>> blockedResponse = limiter.send(throttledHostUrl + "/ok", "GET");
+
+            // requests to other hosts are not blocked
+            List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(limiter.send(baseUrl + "/throttled", "GET"));
+            }
+            for (CompletableFuture<HttpResponse<Void>> response : responses) {
+                assertTrue(HttpUtils.success(response.get()));
+            }
+            assertFalse(throttledResponse.isDone());
+            assertFalse(blockedResponse.isDone());
+
+            // retried after Retry-After
+            assertTrue(HttpUtils.success(throttledResponse.get()));
+            assertTrue(HttpUtils.success(blockedResponse.get()));
+            assertEquals(2, throttledRequests.get());
+        }
+
+        // give up after maxRetries
+        try (HostRateLimiter limiter = new HostRateLimiter(client, 1000, 20, 0)) {
+            assertTrue(HttpUtils.tooManyRequests(limiter.send(baseUrl + "/limited", "GET").get()));
+
+            // URLs that are not http(s) are rejected before they are queued
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> limiter.send("ftp://example.com/file", "GET").get());
+            assertTrue(exception.getCause() instanceof IllegalArgumentException);
+            assertEquals(0, limiter.getQueuedRequestCount());
+        }
+    }
+
+    @Test
+    void testRedirectResolver() throws ExecutionException, InterruptedException {
+        AtomicInteger redirectRequests = new AtomicInteger(0);
+        String[][] redirects = {{"/short", "/http"}, {"/http", "relative"}, {"/relative", "/ok"}, {"/loop1", "/loop2"}, {"/loop2", "/loop1"}};
+        for (String[] redirect : redirects) {
+            server.createContext(redirect[0], exchange -> {
+                redirectRequests.incrementAndGet();
+                exchange.getResponseHeaders().add("Location", redirect[1]); // relative to the request URL
+                exchange.sendResponseHeaders(302, -1);
+                exchange.close();
+            });
+        }
+
+        AsyncHttpClient client = new AsyncHttpClient(4, false, 1000, 5000);
+        RedirectResolver resolver = new RedirectResolver(client, "GET", 5, 1000);
+        RedirectResolver.RedirectChain chain = resolver.resolve(baseUrl + "/short").get();
+        assertTrue(chain.isResolved());
+        assertEquals(200, chain.getStatusCode());
+        assertEquals(3, chain.getRedirectCount());
+        assertEquals(baseUrl + "/ok", chain.getTargetUrl());
+        assertEquals(3, redirectRequests.get());
+
+        // memoized hops do not require requests
+        chain = resolver.resolve(baseUrl + "/http").get();
+        assertEquals(baseUrl + "/ok", chain.getTargetUrl());
+        assertEquals(2, chain.getRedirectCount());
+        assertEquals(3, redirectRequests.get());
+        assertEquals(4, resolver.getMemoizedHopCount());
+
+        chain = resolver.resolve(baseUrl + "/loop1").get();
+        assertEquals(RedirectResolver.RedirectChain.Status.CYCLE, chain.getStatus());
+        assertEquals(baseUrl + "/loop1", chain.getTargetUrl());
+        assertEquals(5, redirectRequests.get());
+
+        RedirectResolver limitedResolver = new RedirectResolver(client, "GET", 1, 1000);
+        chain = limitedResolver.resolve(baseUrl + "/short").get();
+        assertEquals(RedirectResolver.RedirectChain.Status.TOO_MANY_REDIRECTS, chain.getStatus());
+        assertEquals(baseUrl + "/http", chain.getTargetUrl());
+        assertEquals(302, chain.getStatusCode());
+
+        // transient results are not memoized
+        limitedResolver.resolve(baseUrl + "/limited").get();
+        assertEquals(2, limitedResolver.getMemoizedHopCount());
+
+        // hops beyond the bound evict the least recently used hops, new hops are still memoized
+        RedirectResolver boundedResolver = new RedirectResolver(client, "GET", 5, 2);
+        assertTrue(boundedResolver.resolve(baseUrl + "/short").get().isResolved());
+        assertEquals(2, boundedResolver.getMemoizedHopCount());
+        int requests = redirectRequests.get();
+        boundedResolver.resolve(baseUrl + "/loop1").get();
+        assertEquals(requests + 2, redirectRequests.get());
+        assertEquals(2, boundedResolver.getMemoizedHopCount());
+        chain = boundedResolver.resolve(baseUrl + "/loop2").get();
+        assertEquals(RedirectResolver.RedirectChain.Status.CYCLE, chain.getStatus());
+        assertEquals(requests + 2, redirectRequests.get());
+    }
+
+    @Test
+    void testLinkStatusStore(@TempDir Path tempDir) throws ExecutionException, InterruptedException, IOException {
+        AtomicInteger requests = new AtomicInteger(0);
+        AtomicInteger conditionalRequests = new AtomicInteger(0);
+        server.createContext("/etag", exchange -> {
+            requests.incrementAndGet();
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                conditionalRequests.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, -1);
+            }
+            exchange.close();
+        });
+
+        AsyncHttpClient client = new AsyncHttpClient(4, true, 1000, 5000);
+        Path file = tempDir.resolve("link-status.bin");
+        String url = baseUrl + "/etag";
+        try (LinkStatusStore store = new LinkStatusStore(file)) {
+            LinkStatus status = HttpUtils.checkLink(client, store, url, "GET", Duration.ofHours(1)).get();
+            assertEquals(200, status.getStatusCode());
+            assertEquals("\"v1\"", status.getETag());
+            assertEquals(1, requests.get());
+
+            // fresh entries do not require requests
+            assertSame(status, HttpUtils.checkLink(client, store, url, "GET", Duration.ofHours(1)).get());
+            assertEquals(1, requests.get());
+
+            // stale entries are re-checked with conditional requests
+            LinkStatus revalidatedStatus = HttpUtils.checkLink(client, store, url, "GET", Duration.ZERO).get();
+            assertEquals(200, revalidatedStatus.getStatusCode());
+            assertEquals(2, requests.get());
+            assertEquals(1, conditionalRequests.get());
+
+            // transient failures are not stored
+            assertEquals(429, HttpUtils.checkLink(client, store, baseUrl + "/limited", "GET", Duration.ofHours(1)).get().getStatusCode());
+            assertNull(store.get(baseUrl + "/limited"));
+            assertEquals(1, store.size());
+        }
+
+        // incomplete records are discarded when the store is reopened
+        Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+        try (LinkStatusStore store = new LinkStatusStore(file)) {
+            assertEquals(1, store.size());
+            LinkStatus status = store.get(url);
+            assertEquals(200, status.getStatusCode());
+            assertEquals(url, status.getFinalUrl());
+            assertEquals("\"v1\"", status.getETag());
+
+            store.put("https://example.com/", 404, null, 0, null, null);
+            store.compact();
+        }
+
+        try (LinkStatusStore store = new LinkStatusStore(file)) {
+            assertEquals(2, store.size());
+            assertEquals(404, store.get("HTTPS://EXAMPLE.COM/").getStatusCode());
+
+            // the store remains open if the compaction fails
+            Path compactedFile = Files.createDirectory(tempDir.resolve("link-status.bin.compacted"));
+            Files.createFile(compactedFile.resolve("blocker"));
+            assertThrows(IOException.class, store::compact);
+            store.put("https://example.org/", 200, null, 0, null, null);
+        }
+
+        LinkStatusStore closedStore;
+        try (LinkStatusStore store = new LinkStatusStore(file)) {
+            assertEquals(3, store.size());
+            assertEquals(200, store.get("https://example.org/").getStatusCode());
+            closedStore = store;
+        }
+        assertThrows(IllegalStateException.class, closedStore::flush);
+    }
+}
@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sotorrent.util.AsyncLogHandler;
+import org.sotorrent.util.LogUtils;
+import org.sotorrent.util.SampledLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogUtilsTest {
+    private static class CollectingHandler extends Handler {
+        private final List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+        private final long delayMillis;
+
+        private CollectingHandler(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            records.add(record);
+        }
+
+        @Override
+        public void flush() { }
+
+        @Override
+        public void close() { }
+    }
+
+    @Test
+    void testClassLoggerRegisteredOnce(@TempDir Path logDir) throws IOException {
+        Logger logger = LogUtils.getClassLogger(LogUtilsTest.class, false, logDir, true);
+        assertSame(logger, LogUtils.getClassLogger(LogUtilsTest.class, false, logDir));
+        assertSame(logger, LogUtils.getClassLogger(LogUtilsTest.class, false, logDir, true));
+        assertEquals(1, logger.getHandlers().length);
+
+        logger.info("async message");
+        logger.getHandlers()[0].flush();
+        assertTrue(Files.readString(logDir.resolve("LogUtilsTest.log")).contains("async message"));
+    }
+
+    @Test
+    void testAsyncLogHandler() throws InterruptedException {
+        CollectingHandler target = new CollectingHandler(0);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 16, AsyncLogHandler.OverflowPolicy.BLOCK);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    logger.info(thread + ":" + i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        handler.flush();
+        assertEquals(4000, target.records.size());
+
+        // records of each thread are written in order, with the caller inferred on the logging thread
+        int[] next = new int[4];
+        for (LogRecord record : target.records) {
+            String[] parts = record.getMessage().split(":");
+            assertEquals(next[Integer.parseInt(parts[0])]++, Integer.parseInt(parts[1]));
+            assertTrue(record.getSourceClassName().startsWith("LogUtilsTest"));
+        }
+        handler.close();
+    }
+
+    @Test
+    void testAsyncLogHandlerDropsRecords() {
+        CollectingHandler target = new CollectingHandler(5);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 4, AsyncLogHandler.OverflowPolicy.DROP);
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+        handler.close();
+        assertTrue(target.records.size() < 100);
+        assertTrue(target.records.stream().anyMatch(record -> record.getMessage().contains("log records dropped")));
+    }
+
+    @Test
+    void testSampledLogger() throws InterruptedException {
+        CollectingHandler target = new CollectingHandler(0);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(target);
+        SampledLogger sampledLogger = new SampledLogger(logger, 2, 5, Duration.ofMillis(200));
+
+        // messages are only created if they are logged
+        AtomicInteger createdMessages = new AtomicInteger(0);
+        for (int i = 0; i < 10; i++) {
+            int line = i;
+            sampledLogger.info("No link found", () -> createdMessages.incrementAndGet() + " no link found in line " + line);
+        }
+        assertEquals(2, createdMessages.get());
+        assertEquals(2, target.records.size());
+        assertEquals("LogUtilsTest", target.records.get(0).getSourceClassName());
+        assertEquals("testSampledLogger", target.records.get(0).getSourceMethodName());
+
+        logger.setLevel(Level.WARNING);
+        sampledLogger.info("Disabled", () -> fail("message created for disabled level"));
+        logger.setLevel(Level.INFO);
+
+        // budget of the class
+        for (int i = 0; i < 5; i++) {
+            sampledLogger.warning("Template " + i, () -> "message");
+        }
+        assertEquals(5, target.records.size());
+
+        // summary of suppressed messages at the beginning of the next interval
+        Thread.sleep(250);
+        sampledLogger.info("No link found", () -> "no link found");
+        assertTrue(target.records.stream().anyMatch(record -> record.getMessage().equals("8 suppressed: No link found")));
+        assertTrue(target.records.stream().anyMatch(record -> record.getMessage().equals("1 suppressed: Template 4")));
+        assertEquals("no link found", target.records.get(target.records.size() - 1).getMessage());
+    }
+}
@@ -1,7 +1,31 @@
 import org.junit.jupiter.api.Test;
+import org.sotorrent.util.HostClassifier;
+import org.sotorrent.util.StackOverflowLink;
 import org.sotorrent.util.URL;
+import org.sotorrent.util.URLCache;
+import org.sotorrent.util.URLParseResult;
+import org.sotorrent.util.URLView;
+import org.sotorrent.util.collections.LongHashSet;
+import org.sotorrent.util.collections.LongLongHashMap;
+import org.sotorrent.util.collections.ShardedLongHashSet;
+import org.sotorrent.util.collections.ShardedLongLongHashMap;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -96,6 +120,10 @@ class URLTest {
             assertNotNull(url);
             assertTrue(url.getUrlString().matches(".+[\\w/]$"), url.getUrlString());
         }
+
+        assertNull(URL.stackOverflowLinkFromSourceCodeLine("for (int i = 0; i < n; i++) {"));
+        assertNull(URL.stackOverflowLinkFromSourceCodeLine("// see stackoverflow.com, https://example.com"));
+        assertNotNull(URL.stackOverflowLinkFromSourceCodeLine("// sTaCk: hTtPs://WwW.StackOverflow.com/q/1 and stackoverflow"));
     }
 
     private void testNormalization(String link, char type) {
@@ -120,4 +148,450 @@ class URLTest {
             assertTrue(normalizedUrl.getUrlString().startsWith("https://stackoverflow.com/" + type +"/"), normalizedUrl.getUrlString());
         }
     }
+
+    @Test
+    void testRootDomain() throws MalformedURLException {
+        assertRootDomain("https://www.bbc.co.uk/news", "bbc.co.uk", "uk");
+        assertRootDomain("HTTP://WWW.EXAMPLE.CO.UK", "EXAMPLE.CO.UK", "UK");
+        assertRootDomain("https://docs.oracle.com/javase/8/", "oracle.com", "com");
+        assertRootDomain("https://user.github.io/project", "github.io", "io"); // private suffixes are ignored
+        assertRootDomain("http://co.uk", "co.uk", "uk"); // host is a public suffix
+        assertRootDomain("http://a.b.c.ck", "b.c.ck", "ck"); // *.ck
+        assertRootDomain("http://a.www.ck", "www.ck", "ck"); // !www.ck
+        assertRootDomain("http://www.city.kawasaki.jp", "city.kawasaki.jp", "jp"); // *.kawasaki.jp, !city.kawasaki.jp
+        assertThrows(MalformedURLException.class, () -> new URL("http://www.example.co.invalid"));
+        assertEquals(URLParseResult.Status.INVALID_TOP_LEVEL_DOMAIN, URL.tryParse("http://www.example.co.invalid").getStatus());
+        assertEquals(URLParseResult.Status.MALFORMED, URL.tryParse("http://www.example.co.uk/a(b)c").getStatus());
+        assertEquals(URLParseResult.Status.EMPTY, URL.tryParse(" ").getStatus());
+    }
+
+    private void assertRootDomain(String link, String rootDomain, String topLevelDomain) throws MalformedURLException {
+        URL url = new URL(link);
+        assertEquals(rootDomain, url.getRootDomain());
+        assertEquals(topLevelDomain, url.getTopLevelDomain());
+    }
+
+    @Test
+    void testParserAgainstRegex() {
+        String[] handwrittenCandidates = {
+                "https://stackoverflow.com/a/53022912",
+                "HTTPS://WWW.STACKOVERFLOW.COM/QUESTIONS/52761212/x#COMMENT92462603_52761348",
+                "ftp://ftp.example.org/pub/file.tar.gz",
+                "http://example.com",
+                "http://example.com/",
+                "http://example.com//",
+                "http://example.com/.",
+                "http://example.com/?",
+                "http://example.com?a=b#c?d#e!",
+                "http://example.com#(x)",
+                "http://example.com#a(x)",
+                "http://example.com/a(b)",
+                "http://example.com/a(b)c",
+                "http://example.com/()",
+                "http://example.com/(b",
+                "https://en.wikipedia.org/wiki/Java_(programming_language)",
+                "http://a..com",
+                "http://.a.com",
+                "http://a.com.",
+                "http://com",
+                "http://a.b.c.d.com/x:y@z",
+                "http://a.nonexistenttld",
+                "http://example.com:8080/x",
+                "https://stackoverflow.com/search?q=user:9841338+[python]",
+                " http://example.com/x., ",
+                "http://example.com/x&#xA&#xD.",
+                "httpss://example.com",
+                "http:/example.com",
+                "mailto:someone@example.com",
+                "http://ex ample.com",
+                "http://exämple.com",
+                "...",
+                "",
+                null
+        };
+        for (String candidate : handwrittenCandidates) {
+            assertParserMatchesRegex(candidate);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            assertParserMatchesRegex(randomUrlCandidate(random));
+        }
+    }
+
+    @Test
+    void testCandidatesAvoidMultiLabelSuffixes() throws IOException {
+        // the generated hosts only consist of candidate domain characters followed by one candidate top-level domain
+        Set<String> topLevelDomains = Arrays.stream(candidateTopLevelDomains).map(String::toLowerCase).collect(Collectors.toSet());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Objects.requireNonNull(
+                getClass().getClassLoader().getResourceAsStream("public_suffix_list.dat")), StandardCharsets.UTF_8))) {
+            String rule;
+            while ((rule = reader.readLine()) != null) {
+                if (rule.startsWith("//") || rule.startsWith("!")) {
+                    continue;
+                }
+                rule = rule.replace("*", "a"); // wildcards match any generated label
+                int lastDot = rule.lastIndexOf('.');
+                if (lastDot < 0 || !topLevelDomains.contains(rule.substring(lastDot + 1))) {
+                    continue;
+                }
+                boolean generatable = rule.substring(0, lastDot).chars()
+                        .allMatch(c -> candidateDomainCharacters.indexOf(c) >= 0);
+                assertFalse(generatable, "Generated hosts may end with public suffix " + rule);
+            }
+        }
+    }
+
+    private static final String[] candidateProtocols = {"http://", "https://", "ftp://", "HTTP://", "hTtPs://", "htp://", "ftps://", "http:/", "", " "};
+    private static final String[] candidateTopLevelDomains = {"com", "ORG", "de", "io", "invalid", ""};
+    private static final String candidateDomainCharacters = "ab-_1.";
+    private static final String candidateTailCharacters = "aZ9_-/?#()!.,:;%&@^=~+ [\"'";
+
+    private String randomUrlCandidate(Random random) {
+        StringBuilder candidate = new StringBuilder();
+        candidate.append(candidateProtocols[random.nextInt(candidateProtocols.length)]);
+        int domainLength = random.nextInt(6);
+        for (int i = 0; i < domainLength; i++) {
+            candidate.append(candidateDomainCharacters.charAt(random.nextInt(candidateDomainCharacters.length())));
+        }
+        if (random.nextBoolean()) {
+            candidate.append('.');
+        }
+        candidate.append(candidateTopLevelDomains[random.nextInt(candidateTopLevelDomains.length)]);
+        int tailLength = random.nextInt(12);
+        for (int i = 0; i < tailLength; i++) {
+            candidate.append(candidateTailCharacters.charAt(random.nextInt(candidateTailCharacters.length())));
+        }
+        if (random.nextInt(10) == 0) {
+            candidate.append("&#xA");
+        }
+        return candidate.toString();
+    }
+
+    private void assertParserMatchesRegex(String candidate) {
+        String[] expected = parseWithRegex(candidate);
+        URLParseResult result = URL.tryParse(candidate);
+        URL url;
+        try {
+            url = new URL(candidate);
+        } catch (MalformedURLException e) {
+            assertNull(expected, "Parser rejected " + candidate);
+            assertFalse(result.isValid(), candidate);
+            assertEquals(e.getMessage(), result.getErrorMessage());
+            return;
+        }
+        assertTrue(result.isValid(), candidate);
+        assertEquals(candidate == null ? "" : url.getUrlString(), result.getUrl().getUrlString());
+        assertNotNull(expected, "Parser accepted " + candidate);
+        String[] actual = {url.getUrlString(), url.getProtocol(), url.getCompleteDomain(), url.getRootDomain(),
+                url.getTopLevelDomain(), url.getPath(), url.getQuery(), url.getFragmentIdentifier()};
+        assertArrayEquals(expected, actual, candidate);
+
+        // views on a region of a larger char sequence yield the same components
+        if (candidate != null) {
+            URLView view = assertDoesNotThrow(() -> URLView.parse(new StringBuilder("<<").append(candidate).append(">>"), 2, candidate.length() + 2));
+            String[] viewComponents = {view.getUrlString(), view.getProtocol(), view.getCompleteDomain(), view.getRootDomain(),
+                    view.getTopLevelDomain(), view.getPath(), view.getQuery(), view.getFragmentIdentifier()};
+            assertArrayEquals(expected, viewComponents, candidate);
+        }
+    }
+
+    private static final Pattern rootDomainPattern = Pattern.compile("([\\w\\-]+\\.([\\w\\-]+))(?:[^\\w\\-.].*)?$", Pattern.CASE_INSENSITIVE);
+
+    /*
+     * Reference implementation of the former regex-based URL parsing, returns null if the candidate is rejected.
+     * The root domain regex always matches the last two labels. This only agrees with the public suffix list if no
+     * generated host ends with a multi-label public suffix (e.g., com.az or *.ck), which is ensured by
+     * testCandidatesAvoidMultiLabelSuffixes.
+     */
+    private String[] parseWithRegex(String candidate) {
+        String urlString = candidate;
+        if (urlString != null) {
+            urlString = urlString.trim();
+            int length = 0;
+            while (length != urlString.length()) {
+                length = urlString.length();
+                while (urlString.endsWith(".") || urlString.endsWith(",") || urlString.endsWith(":")
+                        || urlString.endsWith(";") || urlString.endsWith("%") || urlString.endsWith("#")) {
+                    urlString = urlString.substring(0, urlString.length() - 1);
+                }
+                while (urlString.endsWith("&#xA") || urlString.endsWith("&#xD")) {
+                    urlString = urlString.substring(0, urlString.length() - 4);
+                }
+            }
+        }
+        if (urlString == null || urlString.isEmpty()) {
+            return new String[]{urlString, null, null, null, null, null, null, null};
+        }
+        if (!URL.getUrlPattern().matcher(urlString).matches()) {
+            return null;
+        }
+
+        java.net.URL urlObject;
+        try {
+            urlObject = new java.net.URL(urlString);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+        Matcher rootDomainMatcher = rootDomainPattern.matcher(urlObject.getHost());
+        assertTrue(rootDomainMatcher.find(), urlString);
+        if (!URL.getValidTopLevelDomains().contains(rootDomainMatcher.group(2).toLowerCase())) {
+            return null;
+        }
+
+        String path = urlObject.getPath();
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.trim().length() == 0 || Arrays.asList(".", ",", ":").contains(path)) {
+            path = null;
+        }
+        String query = urlObject.getQuery();
+        if (query != null && query.trim().length() == 0) {
+            query = null;
+        }
+        String fragmentIdentifier = urlObject.getRef();
+        if (fragmentIdentifier != null && fragmentIdentifier.trim().length() == 0) {
+            fragmentIdentifier = null;
+        }
+
+        return new String[]{urlString, urlObject.getProtocol(), urlObject.getHost(), rootDomainMatcher.group(1),
+                rootDomainMatcher.group(2), path, query, fragmentIdentifier};
+    }
+
+    @Test
+    void testExtractAll() {
+        String body = "See https://stackoverflow.com/a/53022912, but not `http://example.com/code` or "
+                + "`foo` [docs](https://docs.oracle.com/javase/8/docs/api/java/net/URL.html#getPath()). "
+                + "Broken: http://example.invalid/x and ftp://ftp.example.org/pub/. Last: http://example.org/last";
+        List<String> urls = URL.extractAll(body).map(URL::getUrlString).collect(Collectors.toList());
+        assertEquals(Arrays.asList(
+                "https://stackoverflow.com/a/53022912",
+                "https://docs.oracle.com/javase/8/docs/api/java/net/URL.html#getPath",
+                "ftp://ftp.example.org/pub/",
+                "http://example.org/last"
+        ), urls);
+        assertEquals(extractAllWithRegex(body), urls);
+        assertEquals(5, URL.extractAll(body, false).count());
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder randomBody = new StringBuilder();
+            int candidateCount = random.nextInt(5);
+            for (int j = 0; j < candidateCount; j++) {
+                randomBody.append(random.nextBoolean() ? " `" : " ").append(randomUrlCandidate(random));
+            }
+            assertEquals(extractAllWithRegex(randomBody.toString()),
+                    URL.extractAll(randomBody).map(URL::getUrlString).collect(Collectors.toList()),
+                    randomBody.toString());
+        }
+    }
+
+    private List<String> extractAllWithRegex(String body) {
+        List<String> urls = new ArrayList<>();
+        Matcher matcher = URL.getUrlPattern().matcher(body);
+        while (matcher.find()) {
+            if (URL.inInlineCode(matcher, body)) {
+                continue;
+            }
+            try {
+                urls.add(new URL(matcher.group()).getUrlString());
+            } catch (MalformedURLException e) {
+                // skip invalid URLs
+            }
+        }
+        return urls;
+    }
+
+    @Test
+    void testClassifyStackOverflowLink() {
+        StackOverflowLink answer = StackOverflowLink.classify(stackOverflowAnswerLinkVariants[4]);
+        assertNotNull(answer);
+        assertEquals(StackOverflowLink.Type.ANSWER, answer.getType());
+        assertEquals(53022912, answer.getPostId());
+
+        StackOverflowLink comment = StackOverflowLink.classify(stackOverflowCommentLinkVariants[4]);
+        assertNotNull(comment);
+        assertEquals(StackOverflowLink.Type.COMMENT, comment.getType());
+        assertEquals(28705651, comment.getPostId());
+        assertEquals(28705447, comment.getQuestionId());
+        assertEquals(45733057, comment.getCommentId());
+
+        for (String link : stackOverflowNonPostLinkVariants) {
+            assertNull(StackOverflowLink.classify(link));
+        }
+
+        // leading zeros and ids that do not fit into a long are kept in the normalized link
+        StackOverflowLink leadingZeros = StackOverflowLink.classify("https://stackoverflow.com/a/0053022912");
+        assertEquals(53022912, leadingZeros.getPostId());
+        assertEquals("https://stackoverflow.com/a/0053022912", leadingZeros.getNormalizedLink());
+        assertNotEquals(answer, leadingZeros);
+        StackOverflowLink longId = StackOverflowLink.classify("https://stackoverflow.com/q/12345678901234567890");
+        assertEquals(-1, longId.getPostId());
+        assertEquals("https://stackoverflow.com/q/12345678901234567890", longId.getNormalizedLink());
+        assertEquals(URL.getNormalizedStackOverflowLink(longId.getNormalizedLink()).getFingerprint(), longId.getFingerprint());
+
+        // compare with the former regex cascade
+        String[] fragments = {"http://", "HTTPS://", "https://www.", "https://wwwx", "stackoverflow.com/", "STACKOVERFLOW.COM/",
+                "a/", "q/", "Q/", "questions/", "QUESTIONS/", "123", "45", "0", "9999999999", "/", "#", "#comment", "#COMMENT", "_", "?", " ",
+                "slug", "?noredirect=1", "users/", "\n"};
+        List<String> candidates = new ArrayList<>();
+        for (String[] variants : Arrays.asList(stackOverflowAnswerLinkVariants, stackOverflowQuestionLinkVariants,
+                stackOverflowCommentLinkVariants, stackOverflowNonPostLinkVariants, stackOverflowBrokenQuestionLinks,
+                stackOverflowLinkEndings)) {
+            candidates.addAll(Arrays.asList(variants));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder candidate = new StringBuilder(fragments[random.nextInt(3)]).append(fragments[4]);
+            int fragmentCount = random.nextInt(12);
+            for (int j = 0; j < fragmentCount; j++) {
+                candidate.append(fragments[random.nextInt(fragments.length)]);
+            }
+            candidates.add(candidate.toString());
+        }
+        for (String candidate : candidates) {
+            StackOverflowLink link = StackOverflowLink.classify(candidate);
+            assertEquals(normalizeWithRegex(candidate), link == null ? null : link.getNormalizedLink(), candidate);
+        }
+    }
+
+    /*
+     * Reference implementation of the former regex cascade in URL.getNormalizedStackOverflowLink.
+     */
+    private String normalizeWithRegex(String url) {
+        Matcher commentMatcher = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/(questions/\\d+)/[^\\s/#]+(?:/\\d+)?(?:\\?[^\\s/#]+)?(#comment\\d+_\\d+)", Pattern.CASE_INSENSITIVE).matcher(url);
+        if (commentMatcher.find()) {
+            return ("https://stackoverflow.com/" + commentMatcher.group(1) + commentMatcher.group(2)).toLowerCase();
+        }
+        Matcher shortAnswerMatcher = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/a/([\\d]+)", Pattern.CASE_INSENSITIVE).matcher(url);
+        if (shortAnswerMatcher.find()) {
+            return "https://stackoverflow.com/a/" + shortAnswerMatcher.group(1);
+        }
+        Matcher longAnswerMatcher = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/questions/[\\d]+/[^\\s#]+#([\\d]+)", Pattern.CASE_INSENSITIVE).matcher(url);
+        if (longAnswerMatcher.find()) {
+            return "https://stackoverflow.com/a/" + longAnswerMatcher.group(1);
+        }
+        Matcher shortQuestionMatcher = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/q/([\\d]+)", Pattern.CASE_INSENSITIVE).matcher(url);
+        if (shortQuestionMatcher.find()) {
+            return "https://stackoverflow.com/q/" + shortQuestionMatcher.group(1);
+        }
+        Matcher longQuestionMatcher = Pattern.compile("https?://(?:www.)?stackoverflow\\.com/questions/([\\d]+)", Pattern.CASE_INSENSITIVE).matcher(url);
+        if (longQuestionMatcher.find()) {
+            return "https://stackoverflow.com/q/" + longQuestionMatcher.group(1);
+        }
+        return null;
+    }
+
+    @Test
+    void testURLCache() throws MalformedURLException {
+        URLCache cache = new URLCache(2);
+        URL url = cache.get(stackOverflowAnswerLinkVariants[0]);
+        assertSame(url, cache.get(stackOverflowAnswerLinkVariants[0]));
+        assertThrows(MalformedURLException.class, () -> cache.get(stackOverflowBrokenQuestionLinks[1]));
+        assertThrows(MalformedURLException.class, () -> cache.get(stackOverflowBrokenQuestionLinks[1]));
+        URLParseResult failure = cache.tryGet(stackOverflowBrokenQuestionLinks[1]);
+        assertFalse(failure.isValid());
+        assertSame(failure, cache.tryGet(stackOverflowBrokenQuestionLinks[1]));
+        assertSame(url, cache.tryGet(stackOverflowAnswerLinkVariants[0]).getUrl());
+        assertEquals(5, cache.getStats().hitCount());
+        assertEquals(2, cache.getStats().missCount());
+
+        cache.get(stackOverflowQuestionLinkVariants[0]);
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    void testHostClassifier() throws MalformedURLException {
+        Map<String, String> rules = new HashMap<>();
+        rules.put("stackoverflow.com", "SO");
+        rules.put("stackexchange.com", "SE");
+        rules.put("github.com", "GitHub");
+        rules.put("gist.github.com", "Gist");
+        rules.put("oracle.com", "Oracle");
+        rules.put("docs.oracle.com/javase/", "JavaDoc");
+        rules.put("docs.oracle.com/javase/8/docs/api/", "JavaDoc8");
+        rules.put("wikipedia.org", "Wikipedia");
+        for (int i = 0; i < 5000; i++) {
+            rules.put("host" + i + ".example.com/path" + i, "Example" + i);
+        }
+        HostClassifier<String> classifier = new HostClassifier<>(rules);
+
+        assertEquals("SO", classifier.classify(new URL("https://stackoverflow.com/a/53022912")));
+        assertEquals("SO", classifier.classify(new URL("https://WWW.StackOverflow.com/q/1")));
+        assertEquals("SE", classifier.classify(new URL("https://meta.stackexchange.com/q/1")));
+        assertEquals("Gist", classifier.classify(new URL("https://gist.github.com/user/1")));
+        assertEquals("GitHub", classifier.classify(new URL("https://github.com/sotorrent/util")));
+        assertNull(classifier.classify(new URL("https://notgithub.com/sotorrent/util")));
+        assertEquals("Oracle", classifier.classify(new URL("https://docs.oracle.com/en/java/")));
+        assertEquals("JavaDoc", classifier.classify(new URL("https://docs.oracle.com/javase/tutorial/")));
+        assertEquals("JavaDoc8", classifier.classify(new URL("https://docs.oracle.com/javase/8/docs/api/java/net/URL.html")));
+        assertEquals("JavaDoc8", classifier.classify(new URL("https://docs.oracle.com/javase/8/docs/api/")));
+        String body = "see https://docs.oracle.com/javase/8/docs/api/ for details";
+        assertEquals("JavaDoc8", classifier.classify(URLView.parse(body, 4, body.indexOf(" for"))));
+        assertEquals("Wikipedia", classifier.classifyHost("en.wikipedia.org"));
+        assertEquals("Example4711", classifier.classify(new URL("http://host4711.example.com/path4711/x")));
+        assertNull(classifier.classify(new URL("http://host4711.example.com/path4712/x")));
+    }
+
+    @Test
+    void testFingerprint() throws MalformedURLException {
+        LongHashSet fingerprints = new LongHashSet();
+        LongLongHashMap counts = new LongLongHashMap();
+        for (String[] variants : Arrays.asList(stackOverflowAnswerLinkVariants, stackOverflowQuestionLinkVariants,
+                stackOverflowCommentLinkVariants)) {
+            for (String link : variants) {
+                URL normalizedUrl = URL.getNormalizedStackOverflowLink(link);
+                StackOverflowLink stackOverflowLink = StackOverflowLink.classify(link);
+                assertNotNull(stackOverflowLink);
+                assertEquals(normalizedUrl.getFingerprint(), stackOverflowLink.getFingerprint(), link);
+                assertEquals(normalizedUrl.getFingerprint(), URLView.parse(normalizedUrl.getUrlString()).getFingerprint());
+                fingerprints.add(stackOverflowLink.getFingerprint());
+                counts.addTo(stackOverflowLink.getFingerprint(), 1);
+            }
+        }
+        // answer 53022912, answer 3758880, questions 52992319 and 53022815, comments 92462603 and 45733057
+        assertEquals(6, fingerprints.size());
+        assertEquals(6, counts.size());
+        assertEquals(5, counts.get(StackOverflowLink.classify(stackOverflowAnswerLinkVariants[0]).getFingerprint(), 0));
+
+        assertEquals(new URL("HTTPS://StackOverflow.com/a/1").getFingerprint(), new URL("https://stackoverflow.com/a/1").getFingerprint());
+        assertNotEquals(new URL("https://stackoverflow.com/A/1").getFingerprint(), new URL("https://stackoverflow.com/a/1").getFingerprint());
+
+        LongHashSet set = new LongHashSet(2);
+        LongLongHashMap map = new LongLongHashMap(2);
+        for (long i = -1000; i < 1000; i++) {
+            assertTrue(set.add(i * 31));
+            map.put(i * 31, i);
+        }
+        assertFalse(set.add(0));
+        assertEquals(2000, set.size());
+        assertEquals(2000, map.size());
+        for (long i = -1000; i < 1000; i++) {
+            assertTrue(set.contains(i * 31));
+            assertEquals(i, map.get(i * 31, Long.MIN_VALUE));
+        }
+        assertFalse(set.contains(1));
+        assertEquals(Long.MIN_VALUE, map.get(1, Long.MIN_VALUE));
+
+        // sharded variants for more than LongHashSet.MAXIMUM_SIZE elements
+        ShardedLongHashSet shardedSet = new ShardedLongHashSet();
+        ShardedLongLongHashMap shardedMap = new ShardedLongLongHashMap(2000);
+        for (long i = -1000; i < 1000; i++) {
+            assertTrue(shardedSet.add(i * 31));
+            shardedMap.addTo(i * 31, i);
+        }
+        assertFalse(shardedSet.add(0));
+        assertEquals(2000, shardedSet.size());
+        assertEquals(2000, shardedMap.size());
+        assertTrue(shardedSet.contains(31 * 999));
+        assertFalse(shardedSet.contains(1));
+        assertEquals(-1000, shardedMap.get(-31000, 0));
+        long[] sum = {0};
+        shardedSet.forEach(key -> sum[0] += key);
+        assertEquals(-31000, sum[0]);
+    }
 }